@@ -0,0 +1,69 @@
+package benchmarks;
+
+import components.Simulation;
+import components.SimulationParams;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Benchmarks of the flocking kernel without a GUI.
+ *
+ *  The world grows with the Boid count so that the density stays at
+ *  one Boid per 400 square pixels, which makes the neighbor count
+ *  depend only on the radius. Accelerations are computed on fixed
+ *  positions, so every invocation does the same amount of work. The
+ *  Boids are stored in spawn order, which is random in space, or
+ *  reordered along a Morton curve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+public class FlockBenchmark {
+    // Every trial starts from the same Boids
+    private static final long SEED = 42;
+    private static final double AREA_PER_BOID = 400;
+
+    @Param({"1000", "10000", "100000"})
+    public int boidCount;
+
+    @Param({"25", "50", "100"})
+    public int radius;
+
+    @Param({"sequential", "parallel"})
+    public String execution;
+
+    @Param({"spawn", "morton"})
+    public String order;
+
+    private Simulation simulation;
+    private double width;
+    private double height;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        width = height = Math.sqrt(boidCount * AREA_PER_BOID);
+        simulation = new Simulation();
+        simulation.setSeed(SEED);
+        simulation.setParams(SimulationParams.DEFAULTS.withEntityCount(boidCount)
+                .withDistances(radius, radius, radius / 2));
+        simulation.setParallel(execution.equals("parallel"));
+        simulation.setReorderInterval(0);
+        simulation.updateEntityCount(width, height);
+        if (order.equals("morton")) simulation.reorder(width, height);
+    }
+
+    @Benchmark
+    public double updateAccelerations() {
+        simulation.updateAccelerations(width, height);
+        return simulation.getBoids().ax[0];
+    }
+
+    @Benchmark
+    public double move() {
+        simulation.move(width, height);
+        return simulation.getBoids().px[0];
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import components.Simulation;
+import components.SimulationParams;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Compares the scalar and SIMD neighbor kernels on one thread,
+ *  in double and single precision, with and without field of view culling.
+ *  Uses the same constant density world as FlockBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+public class KernelBenchmark {
+    // Every trial starts from the same Boids
+    private static final long SEED = 42;
+    private static final double AREA_PER_BOID = 400;
+
+    @Param({"10000", "100000"})
+    public int boidCount;
+
+    @Param({"50", "100"})
+    public int radius;
+
+    @Param({"SCALAR", "VECTOR"})
+    public Simulation.Kernel kernel;
+
+    @Param({"DOUBLE", "FLOAT"})
+    public Simulation.Precision precision;
+
+    @Param({"360", "170", "120"})
+    public double detectionAngle;
+
+    private Simulation simulation;
+    private double width;
+    private double height;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (kernel == Simulation.Kernel.VECTOR && !Simulation.VECTOR_API_AVAILABLE)
+            throw new IllegalStateException("jdk.incubator.vector is not available");
+        width = height = Math.sqrt(boidCount * AREA_PER_BOID);
+        simulation = new Simulation();
+        simulation.setSeed(SEED);
+        simulation.setParams(SimulationParams.DEFAULTS.withEntityCount(boidCount)
+                .withDistances(radius, radius, radius / 2)
+                .withDetectionAngle(detectionAngle));
+        simulation.setParallel(false);
+        simulation.setKernel(kernel);
+        simulation.setPrecision(precision);
+        simulation.setReorderInterval(0);
+        simulation.updateEntityCount(width, height);
+    }
+
+    @Benchmark
+    public double updateAccelerations() {
+        simulation.updateAccelerations(width, height);
+        return simulation.getBoids().ax[0];
+    }
+}
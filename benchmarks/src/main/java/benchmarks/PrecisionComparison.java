@@ -0,0 +1,111 @@
+package benchmarks;
+
+import components.BoidStore;
+import components.Simulation;
+import components.SimulationParams;
+
+/** Compares the single and double precision modes on flock-level
+ *  statistics and on speed.
+ *
+ *  The trajectories of the two modes separate after some steps, like
+ *  those of any two nearby starting states, so single Boids cannot be
+ *  compared. Instead, seeded flocks are run in both modes and the mean
+ *  speed and the polarization (length of the mean heading, 1 when all
+ *  Boids fly the same way) are averaged over the last steps and over
+ *  several seeds. The check fails if the modes differ by more than the
+ *  tolerances.
+ *
+ *  Run with ./gradlew :benchmarks:precisionComparison
+ */
+public class PrecisionComparison {
+    private static final long[] SEEDS = { 1, 2, 3, 4 };
+    private static final double AREA_PER_BOID = 400;
+    private static final int BOID_COUNT = 4000;
+    private static final int STEPS = 600;
+    private static final int MEASURED_STEPS = 200;
+    private static final double SPEED_TOLERANCE = 0.05;
+    private static final double POLARIZATION_TOLERANCE = 0.1;
+    private static final int TIMED_BOID_COUNT = 100_000;
+    private static final int TIMED_STEPS = 10;
+
+    /** Mean speed and polarization averaged over the measured steps */
+    private record Statistics(double speed, double polarization) {}
+
+    private static Statistics run(long seed, Simulation.Precision precision, Simulation.Kernel kernel) {
+        double width = Math.sqrt(BOID_COUNT * AREA_PER_BOID);
+        Simulation simulation = new Simulation();
+        simulation.setSeed(seed);
+        simulation.setParams(SimulationParams.DEFAULTS.withEntityCount(BOID_COUNT));
+        simulation.setPrecision(precision);
+        simulation.setKernel(kernel);
+        simulation.setParallel(false);
+        double speed = 0, polarization = 0;
+        for (int step = 0; step < STEPS; step++) {
+            simulation.step(width, width);
+            if (step < STEPS - MEASURED_STEPS) continue;
+            BoidStore boids = simulation.getBoids();
+            double speedSum = 0, headingX = 0, headingY = 0;
+            for (int i = 0; i < boids.size(); i++) {
+                double s = Math.sqrt(boids.vx[i]*boids.vx[i] + boids.vy[i]*boids.vy[i]);
+                speedSum += s;
+                if (s > 0) {
+                    headingX += boids.vx[i] / s;
+                    headingY += boids.vy[i] / s;
+                }
+            }
+            speed += speedSum / boids.size();
+            polarization += Math.sqrt(headingX*headingX + headingY*headingY) / boids.size();
+        }
+        return new Statistics(speed / MEASURED_STEPS, polarization / MEASURED_STEPS);
+    }
+
+    private static double time(Simulation.Precision precision, Simulation.Kernel kernel) {
+        double width = Math.sqrt(TIMED_BOID_COUNT * AREA_PER_BOID);
+        Simulation simulation = new Simulation();
+        simulation.setSeed(SEEDS[0]);
+        simulation.setParams(SimulationParams.DEFAULTS.withEntityCount(TIMED_BOID_COUNT));
+        simulation.setPrecision(precision);
+        simulation.setKernel(kernel);
+        simulation.setParallel(false);
+        for (int step = 0; step < TIMED_STEPS; step++) simulation.step(width, width);
+        long start = System.nanoTime();
+        for (int step = 0; step < TIMED_STEPS; step++) simulation.updateAccelerations(width, width);
+        return (System.nanoTime() - start) / 1e6 / TIMED_STEPS;
+    }
+
+    public static void main(String[] args) {
+        boolean failed = false;
+        System.out.printf("%d boids, %d steps, statistics of the last %d steps, seeds 1-%d%n", BOID_COUNT, STEPS, MEASURED_STEPS, SEEDS.length);
+        System.out.printf("%-8s %-8s %12s %14s%n", "kernel", "precision", "mean speed", "polarization");
+        for (Simulation.Kernel kernel : Simulation.Kernel.values()) {
+            if (kernel == Simulation.Kernel.VECTOR && !Simulation.VECTOR_API_AVAILABLE) continue;
+            Statistics[] results = new Statistics[2];
+            for (Simulation.Precision precision : Simulation.Precision.values()) {
+                double speed = 0, polarization = 0;
+                for (long seed : SEEDS) {
+                    Statistics statistics = run(seed, precision, kernel);
+                    speed += statistics.speed() / SEEDS.length;
+                    polarization += statistics.polarization() / SEEDS.length;
+                }
+                results[precision.ordinal()] = new Statistics(speed, polarization);
+                System.out.printf("%-8s %-8s %12.4f %14.4f%n", kernel, precision, speed, polarization);
+            }
+            Statistics reference = results[Simulation.Precision.DOUBLE.ordinal()];
+            Statistics single = results[Simulation.Precision.FLOAT.ordinal()];
+            if (Math.abs(single.speed() - reference.speed()) > SPEED_TOLERANCE * reference.speed()
+                    || Math.abs(single.polarization() - reference.polarization()) > POLARIZATION_TOLERANCE) {
+                System.out.println("FAILED: " + kernel + " statistics differ between the precisions");
+                failed = true;
+            }
+        }
+
+        System.out.printf("%nupdateAccelerations, %d boids, one thread%n", TIMED_BOID_COUNT);
+        for (Simulation.Kernel kernel : Simulation.Kernel.values()) {
+            if (kernel == Simulation.Kernel.VECTOR && !Simulation.VECTOR_API_AVAILABLE) continue;
+            for (Simulation.Precision precision : Simulation.Precision.values()) {
+                System.out.printf("%-8s %-8s %8.1f ms%n", kernel, precision, time(precision, kernel));
+            }
+        }
+        if (failed) System.exit(1);
+    }
+}
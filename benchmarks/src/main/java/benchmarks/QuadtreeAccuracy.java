@@ -0,0 +1,83 @@
+package benchmarks;
+
+import components.BoidStore;
+import components.Simulation;
+import components.SimulationParams;
+
+/** Measures the error and the speed of the quadtree approximation
+ *  against the exact spatial grid.
+ *
+ *  A seeded simulation is run with the exact grid and a small radius
+ *  until the flock has formed. From that state, the accelerations are
+ *  computed with the grid and with the quadtree for several radii and
+ *  opening angles. The error is the RMS difference of the steering
+ *  (acceleration minus velocity), relative to the RMS steering of the
+ *  exact result.
+ *
+ *  Run with ./gradlew :benchmarks:quadtreeAccuracy
+ */
+public class QuadtreeAccuracy {
+    private static final long SEED = 42;
+    private static final double AREA_PER_BOID = 400;
+    private static final int BOID_COUNT = 20000;
+    private static final int SEPARATION_DISTANCE = 25;
+    private static final int WARM_UP_RADIUS = 50;
+    private static final int WARM_UP_STEPS = 50;
+    private static final int TIMED_STEPS = 4;
+
+    /** Computes the accelerations from the given starting accelerations
+     *  TIMED_STEPS times after one untimed run and returns the average
+     *  time in milliseconds */
+    private static double time(Simulation simulation, double width, double[] ax, double[] ay) {
+        BoidStore boids = simulation.getBoids();
+        long start = 0;
+        for (int k = -1; k < TIMED_STEPS; k++) {
+            if (k == 0) start = System.nanoTime();
+            System.arraycopy(ax, 0, boids.ax, 0, ax.length);
+            System.arraycopy(ay, 0, boids.ay, 0, ay.length);
+            simulation.updateAccelerations(width, width);
+        }
+        return (System.nanoTime() - start) / 1e6 / TIMED_STEPS;
+    }
+
+    private static double relativeError(BoidStore boids, double[] exactAx, double[] exactAy) {
+        double error = 0, norm = 0;
+        for (int i = 0; i < boids.size(); i++) {
+            double fx = exactAx[i] - boids.vx[i], fy = exactAy[i] - boids.vy[i];
+            double ex = boids.ax[i] - exactAx[i], ey = boids.ay[i] - exactAy[i];
+            error += ex*ex + ey*ey;
+            norm += fx*fx + fy*fy;
+        }
+        return Math.sqrt(error / norm);
+    }
+
+    public static void main(String[] args) {
+        double width = Math.sqrt(BOID_COUNT * AREA_PER_BOID);
+        Simulation simulation = new Simulation();
+        simulation.setSeed(SEED);
+        simulation.setParams(SimulationParams.DEFAULTS.withEntityCount(BOID_COUNT)
+                .withDistances(WARM_UP_RADIUS, WARM_UP_RADIUS, SEPARATION_DISTANCE));
+        simulation.setParallel(false);
+        for (int step = 0; step < WARM_UP_STEPS; step++) simulation.step(width, width);
+        simulation.updateEntityCount(width, width);
+        BoidStore boids = simulation.getBoids();
+        double[] startAx = boids.ax.clone(), startAy = boids.ay.clone();
+
+        System.out.printf("%d boids, %.0f x %.0f px, separation radius %d, detection angle %.0f%n",
+                BOID_COUNT, width, width, SEPARATION_DISTANCE, simulation.getParams().detectionAngle());
+        System.out.printf("%6s %6s %10s %12s%n", "radius", "theta", "time (ms)", "rel. error");
+        for (int radius : new int[] { 100, 300, 1000 }) {
+            simulation.updateParams(p -> p.withDistances(radius, radius, SEPARATION_DISTANCE));
+            simulation.setNeighborSearch(Simulation.NeighborSearch.SPATIAL_GRID);
+            System.out.printf("%6d %6s %10.1f %12s%n", radius, "exact", time(simulation, width, startAx, startAy), "-");
+            double[] exactAx = boids.ax.clone(), exactAy = boids.ay.clone();
+
+            simulation.setNeighborSearch(Simulation.NeighborSearch.QUADTREE);
+            for (double theta : new double[] { 0.3, 0.5, 0.8, 1.0 }) {
+                simulation.updateParams(p -> p.withOpeningAngle(theta));
+                double millis = time(simulation, width, startAx, startAy);
+                System.out.printf("%6d %6.1f %10.1f %12.4f%n", radius, theta, millis, relativeError(boids, exactAx, exactAy));
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import components.BoidStore;
+import components.Simulation;
+import components.SimulationExecutor;
+import components.SimulationParams;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Checks that a seeded simulation is bit-reproducible.
+ *
+ *  Runs the same seeded simulation with different executors and
+ *  compares checksums of the final positions and velocities. Runs with
+ *  the same neighbor search and kernel must give identical checksums,
+ *  whether they run sequentially or on any number of threads and tiles.
+ *  Different kernels and precisions sum in a different order and are compared only
+ *  with themselves. The toroidal configurations also run the Boids across
+ *  the edges of the world. Verlet lists keep the order of brute force, so
+ *  their checksums must also equal the brute force ones.
+ *
+ *  Exits with status 1 if any checksum differs. Run with
+ *  ./gradlew :benchmarks:checkReproducibility, which is part of check.
+ */
+public class ReproducibilityCheck {
+    private static final long SEED = 42;
+    private static final int BOID_COUNT = 1000;
+    private static final int STEPS = 200;
+    // Small enough that Boids pile up at the borders, which exercises the
+    // random separation of Boids at the same location
+    private static final double WORLD_SIZE = 800;
+
+    /** Returns a checksum of the raw bits of the state of the Boids */
+    private static long checksum(BoidStore boids) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < boids.size(); i++) {
+            hash = 31 * hash + Double.doubleToRawLongBits(boids.px[i]);
+            hash = 31 * hash + Double.doubleToRawLongBits(boids.py[i]);
+            hash = 31 * hash + Double.doubleToRawLongBits(boids.vx[i]);
+            hash = 31 * hash + Double.doubleToRawLongBits(boids.vy[i]);
+        }
+        return hash;
+    }
+
+    /** Runs a seeded simulation and returns the checksum of its final state */
+    private static long run(Simulation.NeighborSearch search, Simulation.Kernel kernel, Simulation.Precision precision,
+                            Simulation.Boundary boundary, boolean parallel, int threads, int tileSize) {
+        Simulation simulation = new Simulation();
+        simulation.setSeed(SEED);
+        simulation.setParams(SimulationParams.DEFAULTS.withEntityCount(BOID_COUNT));
+        simulation.setNeighborSearch(search);
+        simulation.setKernel(kernel);
+        simulation.setPrecision(precision);
+        simulation.setBoundary(boundary);
+        simulation.setParallel(parallel);
+        simulation.setExecutor(new SimulationExecutor(threads, tileSize));
+        for (int step = 0; step < STEPS; step++) simulation.step(WORLD_SIZE, WORLD_SIZE);
+        simulation.setExecutor(null);
+        return checksum(simulation.getBoids());
+    }
+
+    public static void main(String[] args) {
+        Map<String, Simulation.NeighborSearch> searches = new LinkedHashMap<>();
+        searches.put("grid/scalar", Simulation.NeighborSearch.SPATIAL_GRID);
+        searches.put("brute-force/scalar", Simulation.NeighborSearch.BRUTE_FORCE);
+        searches.put("quadtree/scalar", Simulation.NeighborSearch.QUADTREE);
+        searches.put("grid/scalar/float", Simulation.NeighborSearch.SPATIAL_GRID);
+        searches.put("grid/scalar/toroidal", Simulation.NeighborSearch.SPATIAL_GRID);
+        searches.put("quadtree/scalar/toroidal", Simulation.NeighborSearch.QUADTREE);
+        searches.put("brute-force/scalar/toroidal", Simulation.NeighborSearch.BRUTE_FORCE);
+        searches.put("verlet/scalar", Simulation.NeighborSearch.VERLET_LIST);
+        searches.put("verlet/scalar/toroidal", Simulation.NeighborSearch.VERLET_LIST);
+        if (Simulation.VECTOR_API_AVAILABLE) {
+            searches.put("grid/vector", Simulation.NeighborSearch.SPATIAL_GRID);
+            searches.put("grid/vector/float", Simulation.NeighborSearch.SPATIAL_GRID);
+            searches.put("grid/vector/toroidal", Simulation.NeighborSearch.SPATIAL_GRID);
+        }
+
+        boolean failed = false;
+        Map<String, Long> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Simulation.NeighborSearch> search : searches.entrySet()) {
+            Simulation.Kernel kernel = search.getKey().contains("vector") ? Simulation.Kernel.VECTOR : Simulation.Kernel.SCALAR;
+            Simulation.Precision precision = search.getKey().endsWith("float") ? Simulation.Precision.FLOAT : Simulation.Precision.DOUBLE;
+            Simulation.Boundary boundary = search.getKey().endsWith("toroidal") ? Simulation.Boundary.TOROIDAL : Simulation.Boundary.WALLS;
+            List<Long> checksums = new ArrayList<>();
+            checksums.add(run(search.getValue(), kernel, precision, boundary, false, 1, SimulationExecutor.DEFAULT_TILE_SIZE));
+            checksums.add(run(search.getValue(), kernel, precision, boundary, false, 1, SimulationExecutor.DEFAULT_TILE_SIZE));
+            for (int threads : new int[] { 1, 2, 4 }) {
+                for (int tileSize : new int[] { 1, 4 }) checksums.add(run(search.getValue(), kernel, precision, boundary, true, threads, tileSize));
+            }
+            boolean same = checksums.stream().distinct().count() == 1;
+            failed |= !same;
+            System.out.printf("%-28s %s %016x%n", search.getKey(), same ? "ok      " : "MISMATCH", checksums.get(0));
+            if (!same) checksums.forEach(checksum -> System.out.printf("    %016x%n", checksum));
+            results.put(search.getKey(), checksums.get(0));
+        }
+        for (Map.Entry<String, Long> result : results.entrySet()) {
+            if (!result.getKey().startsWith("verlet")) continue;
+            String reference = result.getKey().replace("verlet", "brute-force");
+            if (!result.getValue().equals(results.get(reference))) {
+                failed = true;
+                System.out.printf("%-28s MISMATCH with %s%n", result.getKey(), reference);
+            }
+        }
+        if (failed) System.exit(1);
+    }
+}
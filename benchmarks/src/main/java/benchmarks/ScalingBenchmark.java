@@ -0,0 +1,58 @@
+package benchmarks;
+
+import components.Simulation;
+import components.SimulationExecutor;
+import components.SimulationParams;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Strong scaling of the force computation: a fixed problem of
+ *  100k Boids run with 1 to N worker threads and several tile sizes.
+ *  Select the thread counts for the machine with e.g.
+ *  -PjmhArgs="ScalingBenchmark -p threads=1,2,4,8,16"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+public class ScalingBenchmark {
+    // Every trial starts from the same Boids
+    private static final long SEED = 42;
+    private static final double AREA_PER_BOID = 400;
+    private static final int BOID_COUNT = 100000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"2", "4", "8"})
+    public int tileSize;
+
+    private Simulation simulation;
+    private double width;
+    private double height;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        width = height = Math.sqrt(BOID_COUNT * AREA_PER_BOID);
+        simulation = new Simulation();
+        simulation.setSeed(SEED);
+        simulation.setParams(SimulationParams.DEFAULTS.withEntityCount(BOID_COUNT));
+        simulation.setExecutor(new SimulationExecutor(threads, tileSize));
+        simulation.setReorderInterval(0);
+        simulation.updateEntityCount(width, height);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        simulation.getExecutor().shutdown();
+    }
+
+    @Benchmark
+    public double updateAccelerations() {
+        simulation.updateAccelerations(width, height);
+        return simulation.getBoids().ax[0];
+    }
+}
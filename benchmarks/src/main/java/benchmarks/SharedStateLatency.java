@@ -0,0 +1,143 @@
+package benchmarks;
+
+import components.BoidStore;
+import components.SharedStateExporter;
+import components.SharedStateReader;
+import components.Simulation;
+import components.SimulationParams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/** Measures the shared state export and checks that readers see only
+ *  consistent frames.
+ *
+ *  First times publishing a simulated flock. Then a writer publishes
+ *  frames in which every value equals the step number while a reader
+ *  thread with its own mapping of the file reads as fast as it can. A
+ *  frame with any other value is torn, which the seqlock must prevent.
+ *  Last, frames are published at a fixed rate and the reader measures
+ *  the time from publishing to having copied the frame.
+ *
+ *  Exits with status 1 if a torn frame is read. Run with
+ *  ./gradlew :benchmarks:sharedStateLatency
+ */
+public class SharedStateLatency {
+    private static final int TIMED_BOID_COUNT = 100_000;
+    private static final int TIMED_FRAMES = 200;
+    private static final int STRESS_BOID_COUNT = 10_000;
+    private static final int STRESS_FRAMES = 20_000;
+    private static final int PACED_FRAMES = 2_000;
+    private static final long PACED_INTERVAL_NANOS = 1_000_000;
+
+    /** Result of a reader thread */
+    private static final class ReaderResult {
+        long framesRead = 0;
+        long tornFrames = 0;
+        long retries = 0;
+        long[] latencies = new long[1024];
+        int latencyCount = 0;
+        IOException failure = null;
+    }
+
+    /** Reads new frames until the given number of frames has been published */
+    private static ReaderResult readUntil(Path path, long lastFrame) {
+        ReaderResult result = new ReaderResult();
+        BoidStore store = new BoidStore();
+        try (SharedStateReader reader = new SharedStateReader(path)) {
+            long seen = 0;
+            while (seen < lastFrame) {
+                if (reader.getPublishedFrames() == seen) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (!reader.read(store)) continue;
+                long now = System.nanoTime();
+                seen = reader.getFrame();
+                result.framesRead++;
+                if (result.latencyCount == result.latencies.length) result.latencies = Arrays.copyOf(result.latencies, 2 * result.latencyCount);
+                result.latencies[result.latencyCount++] = now - reader.getPublishNanos();
+                double expected = reader.getStep();
+                for (int i = 0; i < store.size(); i++) {
+                    if (store.px[i] != expected || store.py[i] != expected || store.vx[i] != expected || store.vy[i] != expected) {
+                        result.tornFrames++;
+                        break;
+                    }
+                }
+            }
+            result.retries = reader.getRetries();
+        } catch (IOException e) {
+            result.failure = e;
+        }
+        return result;
+    }
+
+    /** Publishes frames whose values all equal their step while a reader
+     *  thread reads them, and returns the result of the reader */
+    private static ReaderResult run(Path path, int frames, long intervalNanos) throws IOException, InterruptedException {
+        BoidStore store = new BoidStore(STRESS_BOID_COUNT);
+        store.extend(STRESS_BOID_COUNT);
+        try (SharedStateExporter exporter = new SharedStateExporter(path, STRESS_BOID_COUNT)) {
+            ReaderResult[] result = new ReaderResult[1];
+            Thread reader = new Thread(() -> result[0] = readUntil(path, frames), "shared-state-reader");
+            reader.start();
+            long next = System.nanoTime();
+            for (int step = 1; step <= frames; step++) {
+                Arrays.fill(store.px, 0, STRESS_BOID_COUNT, step);
+                Arrays.fill(store.py, 0, STRESS_BOID_COUNT, step);
+                Arrays.fill(store.vx, 0, STRESS_BOID_COUNT, step);
+                Arrays.fill(store.vy, 0, STRESS_BOID_COUNT, step);
+                if (intervalNanos > 0) {
+                    next += intervalNanos;
+                    long wait;
+                    while ((wait = next - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+                }
+                exporter.publish(store, step, 1, 1);
+            }
+            reader.join();
+            if (result[0].failure != null) throw result[0].failure;
+            return result[0];
+        }
+    }
+
+    private static double percentileMicros(long[] sorted, int count, double percentile) {
+        return sorted[Math.min((int) (percentile / 100 * count), count - 1)] / 1e3;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path shm = Path.of("/dev/shm");
+        Path path = Files.isDirectory(shm) && Files.isWritable(shm) ? Files.createTempFile(shm, "flock", ".state") : Files.createTempFile("flock", ".state");
+        try {
+            // Publishing a simulated flock
+            Simulation simulation = new Simulation();
+            simulation.setSeed(1);
+            simulation.setParams(SimulationParams.DEFAULTS.withEntityCount(TIMED_BOID_COUNT));
+            simulation.updateEntityCount(4000, 4000);
+            try (SharedStateExporter exporter = new SharedStateExporter(path, TIMED_BOID_COUNT)) {
+                for (int frame = 0; frame < TIMED_FRAMES; frame++) exporter.publish(simulation.getBoids(), frame, 4000, 4000);
+                long start = System.nanoTime();
+                for (int frame = 0; frame < TIMED_FRAMES; frame++) exporter.publish(simulation.getBoids(), frame, 4000, 4000);
+                System.out.printf("publish, %d boids: %.3f ms per frame%n", TIMED_BOID_COUNT, (System.nanoTime() - start) / 1e6 / TIMED_FRAMES);
+            }
+
+            boolean failed = false;
+            for (long interval : new long[] { 0, PACED_INTERVAL_NANOS }) {
+                int frames = interval == 0 ? STRESS_FRAMES : PACED_FRAMES;
+                ReaderResult result = run(path, frames, interval);
+                long[] sorted = Arrays.copyOf(result.latencies, result.latencyCount);
+                Arrays.sort(sorted);
+                System.out.printf("%s, %d boids: %d of %d frames read, %d torn, %d retries, latency p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                        interval == 0 ? "unpaced" : "every " + interval / 1000 + " us", STRESS_BOID_COUNT,
+                        result.framesRead, frames, result.tornFrames, result.retries,
+                        percentileMicros(sorted, sorted.length, 50), percentileMicros(sorted, sorted.length, 99), sorted[sorted.length - 1] / 1e3);
+                failed |= result.tornFrames > 0;
+            }
+            if (failed) System.exit(1);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
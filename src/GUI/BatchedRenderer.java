@@ -0,0 +1,94 @@
+package GUI;
+
+import components.BoidSnapshot;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/** Draws all Boids in one batch into a single image.
+ *
+ *  The image is a WritableImage backed by a PixelBuffer that wraps an
+ *  int array, so Boids are plotted straight into the array and the scene
+ *  graph only sees one node, whatever the Boid count. Optionally a short
+ *  line is drawn from every Boid in the direction of its velocity.
+ */
+public class BatchedRenderer implements Renderer {
+    private static final int BOID_COLOR = 0xFFFFFFFF;
+    private static final int HEADING_COLOR = 0xFF8FBFFF;
+    private static final int HEADING_LENGTH = 6;
+    // Pixel offsets of a disc with radius 2, matching the Circles of NodeRenderer
+    private static final int[] DISC_X = { 0, -1, 0, 1, -2, -1, 0, 1, 2, -1, 0, 1, 0 };
+    private static final int[] DISC_Y = { -2, -1, -1, -1, 0, 0, 0, 0, 0, 1, 1, 1, 2 };
+
+    private final ImageView view = new ImageView();
+    private Pane pane = null;
+    private int width = 0;
+    private int height = 0;
+    private int[] pixels = new int[0];
+    private PixelBuffer<IntBuffer> pixelBuffer = null;
+    private boolean showHeadings = false;
+
+    @Override
+    public void attach(Pane pane) {
+        this.pane = pane;
+        pane.getChildren().add(view);
+    }
+
+    @Override
+    public void detach(Pane pane) {
+        pane.getChildren().remove(view);
+        this.pane = null;
+    }
+
+    @Override
+    public void draw(BoidSnapshot frame, double alpha) {
+        resize((int) Math.ceil(pane.getWidth()), (int) Math.ceil(pane.getHeight()));
+        if (pixelBuffer == null) return;
+
+        // Transparent background lets the background of the pane show through
+        Arrays.fill(pixels, 0);
+        for (int i = 0; i < frame.size(); i++) {
+            int x = (int) (frame.prevX[i] + (frame.px[i] - frame.prevX[i]) * alpha);
+            int y = (int) (frame.prevY[i] + (frame.py[i] - frame.prevY[i]) * alpha);
+            if (showHeadings) drawHeading(x, y, frame.vx[i], frame.vy[i]);
+            for (int k = 0; k < DISC_X.length; k++) plot(x + DISC_X[k], y + DISC_Y[k], BOID_COLOR);
+        }
+        pixelBuffer.updateBuffer(__ -> null);
+    }
+
+    /** Recreates the image if the size of the pane has changed */
+    private void resize(int newWidth, int newHeight) {
+        if (newWidth == width && newHeight == height) return;
+        width = newWidth;
+        height = newHeight;
+        if (width <= 0 || height <= 0) {
+            pixelBuffer = null;
+            view.setImage(null);
+            return;
+        }
+        pixels = new int[width * height];
+        pixelBuffer = new PixelBuffer<>(width, height, IntBuffer.wrap(pixels), PixelFormat.getIntArgbPreInstance());
+        view.setImage(new WritableImage(pixelBuffer));
+    }
+
+    /** Draws a line from the given location to the direction of the given velocity */
+    private void drawHeading(int x, int y, double vx, double vy) {
+        double len = Math.sqrt(vx*vx + vy*vy);
+        if (len == 0) return;
+        double dx = vx / len;
+        double dy = vy / len;
+        for (int k = 3; k <= HEADING_LENGTH; k++) plot(x + (int) Math.round(dx * k), y + (int) Math.round(dy * k), HEADING_COLOR);
+    }
+
+    private void plot(int x, int y, int color) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return;
+        pixels[y * width + x] = color;
+    }
+
+    public void setShowHeadings(boolean showHeadings) { this.showHeadings = showHeadings; }
+}
@@ -0,0 +1,58 @@
+package GUI;
+
+import components.BoidSnapshot;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/** Draws every Boid as its own javafx Circle node. A scene graph with
+ *  a node per Boid does not scale to large flocks, so only the first
+ *  MAX_SHAPES Boids are drawn. */
+public class NodeRenderer implements Renderer {
+    public static final int MAX_SHAPES = 20000;
+
+    private final ArrayList<Circle> shapes = new ArrayList<>();
+    private Pane pane = null;
+
+    @Override
+    public void attach(Pane pane) {
+        this.pane = pane;
+        pane.getChildren().addAll(shapes);
+    }
+
+    @Override
+    public void detach(Pane pane) {
+        pane.getChildren().removeAll(new HashSet<>(shapes));
+        this.pane = null;
+    }
+
+    /** Moves the shapes of the Boids. Creates or removes shapes if the
+     *  drawn Boid count differs from the shape count.
+     */
+    @Override
+    public void draw(BoidSnapshot frame, double alpha) {
+        int count = Math.min(frame.size(), MAX_SHAPES);
+        int diff = count - shapes.size();
+        if (diff > 0) {
+            for (int i = 0; i < diff; i++) {
+                Circle cir = new Circle();
+                cir.setRadius(2);
+                cir.setFill(Color.rgb(255,255,255));
+                shapes.add(cir);
+            }
+            pane.getChildren().addAll(shapes.subList(shapes.size()-diff, shapes.size()));
+        }
+        else if (diff < 0) {
+            pane.getChildren().removeAll(new HashSet<>(shapes.subList(shapes.size()+diff, shapes.size())));
+            shapes.subList(shapes.size()+diff, shapes.size()).clear();
+        }
+        for (int i = 0; i < count; i++) {
+            Circle cir = shapes.get(i);
+            cir.setCenterX(frame.prevX[i] + (frame.px[i] - frame.prevX[i]) * alpha);
+            cir.setCenterY(frame.prevY[i] + (frame.py[i] - frame.prevY[i]) * alpha);
+        }
+    }
+}
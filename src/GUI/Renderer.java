@@ -0,0 +1,24 @@
+package GUI;
+
+import components.BoidSnapshot;
+import javafx.scene.layout.Pane;
+
+/** Draws simulation frames into the drawing pane.
+ *  All methods are called by the javafx thread.
+ */
+public interface Renderer {
+
+    /** Adds the nodes of this renderer to the given pane */
+    void attach(Pane pane);
+
+    /** Removes the nodes of this renderer from the given pane */
+    void detach(Pane pane);
+
+    /** Draws the given frame. Positions are interpolated between the
+     *  previous and current positions of the frame.
+     *
+     * @param frame frame to draw
+     * @param alpha interpolation factor, 0 for previous and 1 for current positions
+     */
+    void draw(BoidSnapshot frame, double alpha);
+}
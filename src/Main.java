@@ -4,45 +4,72 @@ import javafx.beans.property.*;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Slider;
 import javafx.scene.control.TextField;
+import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
-import java.util.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
 
 import  components.*;
+import  GUI.*;
+import  distributed.DistributedSimulation;
 
 public class Main extends Application {
 
-    private static ArrayList<Entity> entities = new ArrayList<>();
-
-    private static boolean awaitsDrawing = false;
-
-    // Boxes are used to pass them as modifiable parameters to functions
-    private static Box<Integer> entityCountBox = new Box<>(100);
-    private static Box<Double> alignmentMultiplierBox = new Box<>(0.8);
-    private static Box<Double> cohesionMultiplierBox = new Box<>(0.5);
-    private static Box<Double> separationMultiplierBox = new Box<>(1.0);
-    private static Box<Integer> alignmentDistanceBox = new Box<>(50);
-    private static Box<Integer> cohesionDistanceBox = new Box<>(30);
-    private static Box<Integer> separationDistanceBox = new Box<>(50);
-    private static Box<Double> maxForceBox = new Box<>(0.1);
-    private static Box<Double> maxSpeedBox = new Box<>(3.0);
-    private static Box<Double> detectionAngleBox = new Box<>(225.0);
+    // Owned by the simulation thread, which publishes its state through 'frames'
+    private static final Simulation simulation = new Simulation();
+    private static final TripleBuffer<BoidSnapshot> frames = new TripleBuffer<>(BoidSnapshot::new);
+    // Owned by the javafx thread
+    private static final NodeRenderer nodeRenderer = new NodeRenderer();
+    private static final BatchedRenderer batchedRenderer = new BatchedRenderer();
+    private static Renderer renderer = batchedRenderer;
+
+    private static volatile double worldWidth = 0;
+    private static volatile double worldHeight = 0;
+
+    // The simulation parameters are a SimulationParams of 'simulation'.
+    // The tick rate is set by the GUI and read by the simulation thread.
+    private static final int MIN_TICK_RATE = 30;
+    private static volatile int tickRate = 60;
+
+    private static final SimulationClock clock = new SimulationClock(tickRate);
+
+    // Set by --record and --replay. Only one of them is used at a time.
+    private static TrajectoryRecorder recorder = null;
+    private static TrajectoryReader replay = null;
+    // Set by --export. Publishes every step for other processes.
+    private static SharedStateExporter exporter = null;
+    // Set by --workers. Runs the steps in worker processes instead.
+    private static DistributedSimulation distributed = null;
+    // Frame shown by the replay and the frame the user asked to jump to, or -1
+    private static volatile int replayFrame = 0;
+    private static volatile int replaySeek = -1;
+    // True while the javafx thread moves the replay slider to the shown frame
+    private static boolean followingReplay = false;
+
+    // Time between refreshes of the metrics overlay
+    private static final long OVERLAY_REFRESH_NANOS = 250_000_000L;
 
 
     /* Private methods */
 
-    /** A simple wrapper class for any type */
-    private static class Box<T> {
-        T val;
-        Box(T value) { val = value; }
-    }
-
-
     /** Filters extra dots and other non-decimal characters
      * from given string.
      *
@@ -58,46 +85,134 @@ public class Main extends Application {
     }
 
 
-    /** Creates a new Boid and adds it to 'entities'.
-     *  Creates also a javafx shape for the Boid and
-     *  adds it to children of given pane.
+    /** Switches the renderer used to draw the Boids
      *
      * @param pane pane used as boid drawing area
-     * @return created Boid
+     * @param newRenderer the renderer to use
      */
-    private Entity createBoid(Pane pane) {
-        Random randGen = new Random();
-        double randX = randGen.nextDouble() * pane.getWidth();
-        double randY = randGen.nextDouble() * pane.getHeight();
-        Entity e = new Entity(randX, randY);
-        entities.add(e);
-
-        Circle cir = new Circle();
-        e.setShape(cir);
-        cir.setCenterX(randX);
-        cir.setCenterY(randY);
-        cir.setRadius(2);
-        cir.setFill(Color.rgb(255,255,255));
-        pane.getChildren().add(cir);
-        return e;
+    private void setRenderer(Pane pane, Renderer newRenderer) {
+        if (newRenderer == renderer) return;
+        renderer.detach(pane);
+        renderer = newRenderer;
+        renderer.attach(pane);
     }
 
 
-    /** Updates changed entity (i.e. Boid) count by either creating new
-     *  entities or removing them. If the count inside entityCountBox
-     *  equals 'entities' size, does nothing.
+    /** Adds shapes of the obstacles of the simulation to the given
+     *  pane, behind the Boids
      *
      * @param pane pane used as boid drawing area
      */
-    private void updateEntityCount(Pane pane) {
-        int diff = entityCountBox.val - entities.size();
-        if (diff > 0) {
-            for (int i = 0; i < diff; i++) { createBoid(pane); }
+    private void drawObstacles(Pane pane) {
+        for (Obstacle obstacle : simulation.getObstacles()) {
+            Shape shape;
+            if (obstacle instanceof CircleObstacle circle) {
+                shape = new Circle(circle.getCenterX(), circle.getCenterY(), circle.getRadius());
+            }
+            else if (obstacle instanceof PolygonObstacle polygon) {
+                shape = new Polygon(polygon.getPoints());
+            }
+            else continue;
+            shape.setFill(Color.LIGHTGRAY);
+            shape.setMouseTransparent(true);
+            pane.getChildren().add(0, shape);
         }
-        else if (diff < 0) {
-            ListIterator<Entity> it = entities.listIterator(entities.size()+diff);
-            for (int i = diff; i < 0; i++) { it.next(); it.remove(); }
-            pane.getChildren().remove(pane.getChildren().size()+diff, pane.getChildren().size());
+    }
+
+
+    /** Asks for a file and writes the metrics summary to it as CSV
+     *
+     * @param stage owner of the file dialog
+     * @param metricsText text that shows the result of the export
+     */
+    private void exportMetrics(Stage stage, Text metricsText) {
+        FileChooser chooser = new FileChooser();
+        chooser.setInitialFileName("flock-metrics.csv");
+        File file = chooser.showSaveDialog(stage);
+        if (file == null) return;
+        try {
+            simulation.getMetrics().exportCsv(file.toPath());
+        } catch (IOException e) {
+            metricsText.setVisible(true);
+            metricsText.setText("Export failed:\n" + e.getMessage());
+        }
+    }
+
+
+    /** Runs the simulation on the calling thread at the tick rate of 'clock'
+     *  and publishes every step through 'frames'. Records the steps if a
+     *  recorder is set and exports them if an exporter is set. Steps run
+     *  in the worker processes if 'distributed' is set.
+     */
+    private static void runSimulation() {
+        SimulationMetrics metrics = simulation.getMetrics();
+        for (long step = 0; ; step++) {
+            clock.setTickRate(tickRate);
+            long waitStart = metrics.isEnabled() ? System.nanoTime() : 0;
+            long tick = clock.awaitTick();
+            if (waitStart != 0) metrics.recordTime(SimulationMetrics.Metric.WAIT, System.nanoTime() - waitStart, simulation.getBoids().size());
+            double width = worldWidth;
+            double height = worldHeight;
+            BoidSnapshot frame = frames.getBack();
+            if (distributed != null) {
+                distributed.updateEntityCount(width, height);
+                frame.copyPreviousFrom(simulation.getBoids());
+                try {
+                    distributed.step(width, height);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            else {
+                // One snapshot of the parameters for the whole step
+                SimulationParams params = simulation.getParams();
+                simulation.updateEntityCount(params, width, height);
+                simulation.updateAccelerations(params, width, height);
+                frame.copyPreviousFrom(simulation.getBoids());
+                simulation.move(width, height);
+            }
+            frame.copyFrom(simulation.getBoids(), tick, clock.getTickNanos());
+            if (simulation.getBoundary() == Simulation.Boundary.TOROIDAL) frame.unwrapPrevious(width, height);
+            frames.publish();
+            if (recorder != null) recorder.record(simulation.getBoids(), step, width, height);
+            if (exporter != null) exporter.publish(simulation.getBoids(), step, width, height);
+        }
+    }
+
+    /** Plays the frames of 'replay' on the calling thread at the tick length
+     *  stored in the file, jumping to replaySeek when it is set. Loops at the end.
+     */
+    private static void runReplay() {
+        BoidStore previous = new BoidStore();
+        BoidStore current = new BoidStore();
+        int frameCount = replay.getFrameCount();
+        try {
+            int frame = 0;
+            replay.readFrame(0, current);
+            // Frames were recorded one step apart, whatever the tick rate of the GUI is
+            clock.setTickNanos(replay.getTickNanos());
+            while (true) {
+                long tick = clock.awaitTick();
+                int seek = replaySeek;
+                if (seek >= 0) {
+                    replaySeek = -1;
+                    frame = Math.min(seek, frameCount - 1);
+                    replay.readFrame(frame, current);
+                }
+                BoidStore swap = previous;
+                previous = current;
+                current = swap;
+                frame = (frame + 1) % frameCount;
+                replay.readFrame(frame, current);
+                // Boids are only interpolated between frames of the same Boid count
+                BoidSnapshot snapshot = frames.getBack();
+                snapshot.copyPreviousFrom(previous.size() == current.size() && frame != 0 ? previous : current);
+                snapshot.copyFrom(current, tick, clock.getTickNanos());
+                frames.publish();
+                replayFrame = frame;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -128,15 +243,15 @@ public class Main extends Application {
      *
      * @param newValue the new double value as string
      * @param max limit of the new value
-     * @param valueToChange box containing the modifier to change
+     * @param valueToChange receives the new value of the modifier
      * @param slider javafx slider that controls corresponding property
      * @param textField javafx textField that controls corresponding property
      */
-    private void changeDoubleModifier(String newValue, double max, Box<Double> valueToChange, Slider slider, TextField textField) {
+    private void changeDoubleModifier(String newValue, double max, DoubleConsumer valueToChange, Slider slider, TextField textField) {
         String filtered = filterDecimalString(newValue);
         double parsed = filtered.isEmpty() ? 0 : Double.parseDouble(filtered.replaceFirst("\\.$",""));
         double value = Math.min(Math.max(parsed, 0), max);
-        valueToChange.val = value;
+        valueToChange.accept(value);
         slider.setValue(value);
         textField.setText(filtered.length() > 4 ? filtered.substring(0, 5) : filtered);
         if (parsed > max) textField.setStyle("-fx-text-fill: red;");
@@ -148,19 +263,20 @@ public class Main extends Application {
      *  will throw NumberFormatException if that's not the case.
      *
      * @param newValue the new integer value as string
+     * @param min lower limit of the new value
      * @param max limit of the new value
-     * @param valueToChange box containing the modifier to change
+     * @param valueToChange receives the new value of the modifier
      * @param slider javafx slider that controls corresponding property
      * @param textField javafx textField that controls corresponding property
      */
-    private void changeIntModifier(String newValue, int max, Box<Integer> valueToChange, Slider slider, TextField textField, int stringLength) {
+    private void changeIntModifier(String newValue, int min, int max, IntConsumer valueToChange, Slider slider, TextField textField, int stringLength) {
         String filtered = newValue.replaceAll("[^0-9]", "");
         int parsed = filtered.isEmpty() ? 0 : Integer.parseInt(filtered);
-        int value = Math.min(Math.max(parsed, 0), max);
-        valueToChange.val = value;
+        int value = Math.min(Math.max(parsed, min), max);
+        valueToChange.accept(value);
         slider.setValue(value);
         textField.setText(filtered.length() > stringLength ? filtered.substring(0, stringLength) : filtered);
-        if (parsed > max) textField.setStyle("-fx-text-fill: red;");
+        if (parsed > max || parsed < min) textField.setStyle("-fx-text-fill: red;");
         else textField.setStyle("-fx-text-fill: black;");
     }
 
@@ -174,6 +290,43 @@ public class Main extends Application {
         primaryStage.setScene(new Scene(root, 1000, 750));
         primaryStage.show();
 
+        if (getParameters().getRaw().contains("--brute-force")) simulation.setNeighborSearch(Simulation.NeighborSearch.BRUTE_FORCE);
+        if (getParameters().getRaw().contains("--vector-kernel")) simulation.setKernel(Simulation.Kernel.VECTOR);
+        if (getParameters().getRaw().contains("--quadtree")) simulation.setNeighborSearch(Simulation.NeighborSearch.QUADTREE);
+        if (getParameters().getRaw().contains("--verlet")) simulation.setNeighborSearch(Simulation.NeighborSearch.VERLET_LIST);
+        if (getParameters().getRaw().contains("--float")) simulation.setPrecision(Simulation.Precision.FLOAT);
+        if (getParameters().getRaw().contains("--toroidal")) simulation.setBoundary(Simulation.Boundary.TOROIDAL);
+        if (getParameters().getRaw().contains("--metrics")) simulation.getMetrics().setEnabled(true);
+        Map<String, String> namedParameters = getParameters().getNamed();
+        if (namedParameters.containsKey("seed")) simulation.setSeed(Long.parseLong(namedParameters.get("seed")));
+        if (namedParameters.containsKey("opening-angle")) {
+            double openingAngle = Double.parseDouble(namedParameters.get("opening-angle"));
+            simulation.updateParams(p -> p.withOpeningAngle(openingAngle));
+        }
+        if (namedParameters.containsKey("reorder-interval")) simulation.setReorderInterval(Integer.parseInt(namedParameters.get("reorder-interval")));
+        if (namedParameters.containsKey("verlet-skin")) simulation.setNeighborListSkin(Double.parseDouble(namedParameters.get("verlet-skin")));
+        if (namedParameters.containsKey("obstacles")) simulation.setObstacles(ObstacleFile.load(Path.of(namedParameters.get("obstacles"))));
+        if (namedParameters.containsKey("replay")) {
+            replay = new TrajectoryReader(Path.of(namedParameters.get("replay")));
+            if (replay.getFrameCount() == 0) throw new IOException(namedParameters.get("replay") + " has no frames");
+        }
+        else if (namedParameters.containsKey("record")) {
+            recorder = new TrajectoryRecorder(Path.of(namedParameters.get("record")), clock.getTickNanos());
+        }
+        if (namedParameters.containsKey("export") && replay == null) {
+            exporter = new SharedStateExporter(Path.of(namedParameters.get("export")), Simulation.MAX_ENTITY_COUNT);
+        }
+        if (namedParameters.containsKey("threads") || namedParameters.containsKey("tile-size")) {
+            int threads = Integer.parseInt(namedParameters.getOrDefault("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+            int tileSize = Integer.parseInt(namedParameters.getOrDefault("tile-size", Integer.toString(SimulationExecutor.DEFAULT_TILE_SIZE)));
+            simulation.setExecutor(new SimulationExecutor(threads, tileSize));
+        }
+        if (namedParameters.containsKey("workers") && replay == null) {
+            if (simulation.getBoundary() == Simulation.Boundary.TOROIDAL) throw new IllegalArgumentException("--workers does not support --toroidal");
+            int workers = Integer.parseInt(namedParameters.get("workers"));
+            distributed = new DistributedSimulation(simulation, workers, Math.max(Runtime.getRuntime().availableProcessors() / workers, 1));
+        }
+
         Pane pane = (Pane) root.lookup("#draw_pane");
 
         /* UI controls */
@@ -188,6 +341,7 @@ public class Main extends Application {
         Slider cohesionDistanceSlider  = (Slider) root.lookup("#cohesion_distance_slider");
         Slider separationDistanceSlider  = (Slider) root.lookup("#separation_distance_slider");
         Slider detectionAngleSlider  = (Slider) root.lookup("#detection_angle_slider");
+        Slider tickRateSlider  = (Slider) root.lookup("#tick_rate_slider");
 
         TextField alignmentTextfield  = (TextField) root.lookup("#alignment_field");
         TextField cohesionTextfield   = (TextField) root.lookup("#cohesion_field");
@@ -199,6 +353,18 @@ public class Main extends Application {
         TextField cohesionDistanceTextfield  = (TextField) root.lookup("#cohesion_distance_field");
         TextField separationDistanceTextfield  = (TextField) root.lookup("#separation_distance_field");
         TextField detectionAngleTextfield  = (TextField) root.lookup("#detection_angle_field");
+        TextField tickRateTextfield  = (TextField) root.lookup("#tick_rate_field");
+
+        @SuppressWarnings("unchecked")
+        ChoiceBox<String> rendererChoice = (ChoiceBox<String>) root.lookup("#renderer_choice");
+        CheckBox headingsCheckbox = (CheckBox) root.lookup("#headings_checkbox");
+        CheckBox metricsCheckbox = (CheckBox) root.lookup("#metrics_checkbox");
+        Button metricsExportButton = (Button) root.lookup("#metrics_export_button");
+        Text metricsText = (Text) root.lookup("#metrics_text");
+        Text replayLabel = (Text) root.lookup("#replay_label");
+        FlowPane replayPane = (FlowPane) root.lookup("#replay_pane");
+        Slider replaySlider = (Slider) root.lookup("#replay_slider");
+        Text replayFrameText = (Text) root.lookup("#replay_frame_text");
 
         StringProperty alignmentProperty = new SimpleStringProperty(alignmentTextfield.getText());
         StringProperty cohesionProperty = new SimpleStringProperty(cohesionTextfield.getText());
@@ -210,161 +376,145 @@ public class Main extends Application {
         StringProperty cohesionDistanceProperty = new SimpleStringProperty(cohesionDistanceTextfield.getText());
         StringProperty separationDistanceProperty = new SimpleStringProperty(separationDistanceTextfield.getText());
         StringProperty detectionAngleProperty = new SimpleStringProperty(detectionAngleTextfield.getText());
+        StringProperty tickRateProperty = new SimpleStringProperty(tickRateTextfield.getText());
 
         /* Listeners for UI controls */
 
-        alignmentProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 1, alignmentMultiplierBox, alignmentSlider, alignmentTextfield));
+        alignmentProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 1, value -> simulation.updateParams(p -> p.withAlignmentMultiplier(value)), alignmentSlider, alignmentTextfield));
         alignmentSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(alignmentProperty, newValue.toString()));
         alignmentTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(alignmentProperty, newValue));
 
-        cohesionProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 1, cohesionMultiplierBox, cohesionSlider, cohesionTextfield));
+        cohesionProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 1, value -> simulation.updateParams(p -> p.withCohesionMultiplier(value)), cohesionSlider, cohesionTextfield));
         cohesionSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(cohesionProperty, newValue.toString()));
         cohesionTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(cohesionProperty, newValue));
 
-        separationProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 1, separationMultiplierBox, separationSlider, separationTextfield));
+        separationProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 1, value -> simulation.updateParams(p -> p.withSeparationMultiplier(value)), separationSlider, separationTextfield));
         separationSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(separationProperty, newValue.toString()));
         separationTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(separationProperty, newValue));
 
-        maxForceProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 1, maxForceBox, maxForceSlider, maxForceTextfield));
+        maxForceProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 1, value -> simulation.updateParams(p -> p.withMaxForce(value)), maxForceSlider, maxForceTextfield));
         maxForceSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(maxForceProperty, newValue.toString()));
         maxForceTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(maxForceProperty, newValue));
 
-        maxSpeedProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 10, maxSpeedBox, maxSpeedSlider, maxSpeedTextfield));
+        maxSpeedProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 10, value -> simulation.updateParams(p -> p.withMaxSpeed(value)), maxSpeedSlider, maxSpeedTextfield));
         maxSpeedSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(maxSpeedProperty, newValue.toString()));
         maxSpeedTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(maxSpeedProperty, newValue));
 
-        boidCountProperty.addListener((__, ___, newValue) -> changeIntModifier(newValue, 10000, entityCountBox, boidCountSlider, boidCountTextfield, 5));
+        boidCountProperty.addListener((__, ___, newValue) -> changeIntModifier(newValue, 0, Simulation.MAX_ENTITY_COUNT, value -> simulation.updateParams(p -> p.withEntityCount(value)), boidCountSlider, boidCountTextfield, 7));
         boidCountSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(boidCountProperty, newValue.intValue()));
         boidCountTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(boidCountProperty, newValue));
 
-        alignmentDistanceProperty.addListener((__, ___, newValue) -> changeIntModifier(newValue, 1000, alignmentDistanceBox, alignmentDistanceSlider, alignmentDistanceTextfield, 4));
+        alignmentDistanceProperty.addListener((__, ___, newValue) -> changeIntModifier(newValue, 0, 1000, value -> simulation.updateParams(p -> p.withAlignmentDistance(value)), alignmentDistanceSlider, alignmentDistanceTextfield, 4));
         alignmentDistanceSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(alignmentDistanceProperty, newValue.intValue()));
         alignmentDistanceTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(alignmentDistanceProperty, newValue));
 
-        cohesionDistanceProperty.addListener((__, ___, newValue) -> changeIntModifier(newValue, 1000, cohesionDistanceBox, cohesionDistanceSlider, cohesionDistanceTextfield, 4));
+        cohesionDistanceProperty.addListener((__, ___, newValue) -> changeIntModifier(newValue, 0, 1000, value -> simulation.updateParams(p -> p.withCohesionDistance(value)), cohesionDistanceSlider, cohesionDistanceTextfield, 4));
         cohesionDistanceSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(cohesionDistanceProperty, newValue.intValue()));
         cohesionDistanceTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(cohesionDistanceProperty, newValue));
 
-        separationDistanceProperty.addListener((__, ___, newValue) -> changeIntModifier(newValue, 1000, separationDistanceBox, separationDistanceSlider, separationDistanceTextfield, 4));
+        separationDistanceProperty.addListener((__, ___, newValue) -> changeIntModifier(newValue, 0, 1000, value -> simulation.updateParams(p -> p.withSeparationDistance(value)), separationDistanceSlider, separationDistanceTextfield, 4));
         separationDistanceSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(separationDistanceProperty, newValue.intValue()));
         separationDistanceTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(separationDistanceProperty, newValue));
 
-        detectionAngleProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 360, detectionAngleBox, detectionAngleSlider, detectionAngleTextfield));
+        detectionAngleProperty.addListener((__, ___, newValue) -> changeDoubleModifier(newValue, 360, value -> simulation.updateParams(p -> p.withDetectionAngle(value)), detectionAngleSlider, detectionAngleTextfield));
         detectionAngleSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(detectionAngleProperty, newValue.toString()));
         detectionAngleTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(detectionAngleProperty, newValue));
 
-        // Initiate controls
-        boidCountProperty.setValue(entityCountBox.val.toString());
-        alignmentProperty.setValue(alignmentMultiplierBox.val.toString());
-        cohesionProperty.setValue(cohesionMultiplierBox.val.toString());
-        separationProperty.setValue(separationMultiplierBox.val.toString());
-        alignmentDistanceProperty.setValue(alignmentDistanceBox.val.toString());
-        cohesionDistanceProperty.setValue(cohesionDistanceBox.val.toString());
-        separationDistanceProperty.setValue(separationDistanceBox.val.toString());
-        maxForceProperty.setValue(maxForceBox.val.toString());
-        maxSpeedProperty.setValue(maxSpeedBox.val.toString());
-        detectionAngleProperty.setValue(detectionAngleBox.val.toString());
+        tickRateProperty.addListener((__, ___, newValue) -> changeIntModifier(newValue, MIN_TICK_RATE, 1000, value -> tickRate = value, tickRateSlider, tickRateTextfield, 4));
+        tickRateSlider.valueProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(tickRateProperty, newValue.intValue()));
+        tickRateTextfield.textProperty().addListener((__, ___, newValue) -> setStringPropertyUnlessEqual(tickRateProperty, newValue));
 
-        /* Create Boids */
+        rendererChoice.getItems().addAll("Batched", "Nodes");
+        rendererChoice.valueProperty().addListener((__, ___, newValue) -> setRenderer(pane, newValue.equals("Nodes") ? nodeRenderer : batchedRenderer));
+        headingsCheckbox.selectedProperty().addListener((__, ___, newValue) -> batchedRenderer.setShowHeadings(newValue));
+        metricsCheckbox.selectedProperty().addListener((__, ___, newValue) -> {
+            simulation.getMetrics().setEnabled(newValue);
+            metricsText.setVisible(newValue);
+        });
+        metricsExportButton.setOnAction(__ -> exportMetrics(primaryStage, metricsText));
+        // The slider follows the replay, so only changes made by the user are seeks
+        replaySlider.valueProperty().addListener((__, ___, newValue) -> {
+            if (!followingReplay) replaySeek = newValue.intValue();
+        });
+        if (replay != null) {
+            replaySlider.setMax(replay.getFrameCount() - 1);
+            replayLabel.setManaged(true);
+            replayLabel.setVisible(true);
+            replayPane.setManaged(true);
+            replayPane.setVisible(true);
+        }
 
-        for (int i = 0; i < entityCountBox.val; i++) { createBoid(pane); }
+        // Initiate controls
+        SimulationParams params = simulation.getParams();
+        boidCountProperty.setValue(Integer.toString(params.entityCount()));
+        alignmentProperty.setValue(Double.toString(params.alignmentMultiplier()));
+        cohesionProperty.setValue(Double.toString(params.cohesionMultiplier()));
+        separationProperty.setValue(Double.toString(params.separationMultiplier()));
+        alignmentDistanceProperty.setValue(Integer.toString(params.alignmentDistance()));
+        cohesionDistanceProperty.setValue(Integer.toString(params.cohesionDistance()));
+        separationDistanceProperty.setValue(Integer.toString(params.separationDistance()));
+        maxForceProperty.setValue(Double.toString(params.maxForce()));
+        maxSpeedProperty.setValue(Double.toString(params.maxSpeed()));
+        detectionAngleProperty.setValue(Double.toString(params.detectionAngle()));
+        tickRateProperty.setValue(Integer.toString(tickRate));
+        drawObstacles(pane);
+        renderer.attach(pane);
+        rendererChoice.setValue("Batched");
+        metricsCheckbox.setSelected(simulation.getMetrics().isEnabled());
 
         /* Create simulation loop */
 
-        Thread updateThread = new Thread(() -> {
-            while (true) {
-                while (awaitsDrawing) {
-                    try { Thread.sleep(5); } catch (InterruptedException e) { e.printStackTrace(); }
-                }
-                updateAccelerations(pane.getWidth(), pane.getHeight());
-                awaitsDrawing = true;
-            }
-        });
+        // The simulation thread must not touch javafx properties, so the size
+        // of the world is handed over through volatile fields
+        worldWidth = pane.getWidth();
+        worldHeight = pane.getHeight();
+        pane.widthProperty().addListener((__, ___, newValue) -> worldWidth = newValue.doubleValue());
+        pane.heightProperty().addListener((__, ___, newValue) -> worldHeight = newValue.doubleValue());
+
+        // The simulation (or the replay) runs on its own thread at the tick rate of
+        // 'clock' and computes frame N+1 while the renderer draws frame N. The
+        // renderer draws on every pulse, interpolating inside the newest frame.
+        Thread updateThread = new Thread(replay != null ? Main::runReplay : Main::runSimulation);
         updateThread.setDaemon(true);
         updateThread.start();
 
+        SimulationMetrics metrics = simulation.getMetrics();
         new AnimationTimer() {
+            private long lastOverlayRefresh = 0;
+
             @Override
             public void handle(long now) {
-                if (!awaitsDrawing) return;
-                updateEntityCount(pane);
-                for (Entity e : entities) { e.move(pane.getWidth(), pane.getHeight()); }
-                awaitsDrawing = false;
-            }
-        }.start();
-    }
-
-
-    /** Updates the accelerations of all entities (i.e. Boids)
-     *  by using alignment, cohesion and separation forces in
-     *  conjunction with border force.
-     *
-     * @param xLimit the xLimit of the world, used to determine borders
-     * @param yLimit the xLimit of the world, used to determine borders
-     */
-    public void updateAccelerations(double xLimit, double yLimit) {
-        // Loop all entities and update their accelerations in parallel
-        entities.parallelStream().forEach(cur -> {
-            int alignmentNeighbors = 0;
-            int cohesionNeighbors = 0;
-            int separationNeighbors = 0;
-            Vector2D alignment = new Vector2D();
-            Vector2D cohesion = new Vector2D();
-            Vector2D separation = new Vector2D();
-
-            // Use nearby entities to determinate forces
-            for (Entity ee : entities) {
-                if (ee == cur) continue;
-                //if (cur.angleToEntity(ee) > detectionAngleBox.val/2) continue;
-                double dist = Math.max(cur.distanceFrom(ee), 0.001);
-
-                if (dist < alignmentDistanceBox.val) {
-                    alignmentNeighbors++;
-                    alignment.add(ee.getVelocity());
+                BoidSnapshot frame = frames.acquire();
+                int shownFrame = replayFrame;
+                if (replay != null && !replaySlider.isValueChanging() && shownFrame != replaySlider.getValue()) {
+                    followingReplay = true;
+                    replaySlider.setValue(shownFrame);
+                    followingReplay = false;
+                    replayFrameText.setText(Integer.toString(shownFrame));
                 }
-                if (dist < cohesionDistanceBox.val) {
-                    cohesionNeighbors++;
-                    cohesion.add(ee.getPosition());
+                if (!metrics.isEnabled()) {
+                    renderer.draw(frame, frame.alphaAt(now));
+                    return;
                 }
-                if (dist < separationDistanceBox.val) {
-                    separationNeighbors++;
-                    separation.add(new Vector2D(cur.getPosition()).subtract(ee.getPosition())
-                            .ensureDirection()
-                            .divide(dist*dist));
+                long drawStart = System.nanoTime();
+                renderer.draw(frame, frame.alphaAt(now));
+                metrics.recordTime(SimulationMetrics.Metric.RENDER, System.nanoTime() - drawStart, frame.size());
+                if (now - lastOverlayRefresh > OVERLAY_REFRESH_NANOS) {
+                    lastOverlayRefresh = now;
+                    metricsText.setText(metrics.formatOverlay());
                 }
             }
+        }.start();
+    }
 
-            if (alignmentNeighbors != 0)
-                alignment
-                        .divide(alignmentNeighbors)
-                        .setMagnitude(maxSpeedBox.val)
-                        .subtract(cur.getVelocity())
-                        .limit(maxForceBox.val);
-            if (cohesionNeighbors != 0)
-                cohesion
-                        .divide(cohesionNeighbors)
-                        .subtract(cur.getPosition())
-                        .setMagnitude(maxSpeedBox.val)
-                        .subtract(cur.getVelocity())
-                        .limit(maxForceBox.val);
-            if (separationNeighbors != 0)
-                separation
-                        .divide(separationNeighbors)
-                        .setMagnitude(maxSpeedBox.val)
-                        .subtract(cur.getVelocity())
-                        .limit(maxForceBox.val);
-
-            cur.getAcceleration()
-                    .add(alignment.multiply(alignmentMultiplierBox.val))
-                    .add(cohesion.multiply(cohesionMultiplierBox.val))
-                    .add(separation.multiply(separationMultiplierBox.val))
-                    .limit(maxSpeedBox.val);
-
-            // Border force
-            double bfX = cur.getX() < xLimit/2 ? 100/Math.pow(cur.getX(),2) : -100/Math.pow(xLimit - cur.getX(),2);
-            double bfY = cur.getY() < yLimit/2 ? 100/Math.pow(cur.getY(),2) : -100/Math.pow(yLimit - cur.getY(),2);
-            cur.getAcceleration().add(new Vector2D(bfX, bfY)).limit(maxSpeedBox.val);
-        });
+
+    /** Closes the trajectory and shared state files and stops the workers when the GUI is closed */
+    @Override
+    public void stop() throws Exception {
+        if (recorder != null) recorder.close();
+        if (exporter != null) exporter.close();
+        if (replay != null) replay.close();
+        if (distributed != null) distributed.close();
     }
 
 
@@ -0,0 +1,123 @@
+package components;
+
+/** Candidate ranges of a Boid in the sorted arrays of SpatialGrid.
+ *
+ *  The candidates are the Boids in the 3x3 block of grid cells around the
+ *  Boid. Each cell is classified once per Boid against the field of view:
+ *  cells completely outside it are left out, and cells completely inside
+ *  it need no test per Boid. Consecutive cells of a row with the same
+ *  class are merged into one range, so the ranges are walked in the order
+ *  of the block and every Boid is seen in the same order as by walking the
+ *  cells one by one. In a toroidal world a row is also split where the
+ *  block crosses the left or right edge of the world.
+ *
+ *  The edges of the field of view lie on two lines through the Boid.
+ *  Below 180 degrees the field of view is the intersection of the half
+ *  planes on the inner sides of these lines, and otherwise their union,
+ *  which also contains the half plane in front of the Boid. The hidden
+ *  region is the complement. A cell is in a half plane if its corner
+ *  farthest across the line is, and the dot products of the corners with
+ *  the normals of the lines change by a constant from cell to cell, so the
+ *  classes cost a few additions per cell. The test is conservative: cells
+ *  within a small margin of a line are tested per Boid, so rounding in
+ *  the test of a single Boid cannot disagree with it. Cells on the last
+ *  row or column are always tested, as Boids outside the world are clamped
+ *  into them, and so are all cells if the block may wrap onto itself.
+ *
+ *  Each thread has its own instance in its NeighborSums.
+ */
+final class BlockRanges {
+    // Relative margin of the cell tests, far above the rounding error of single precision
+    private static final double MARGIN = 1e-5;
+    private static final int HIDDEN = 0, VISIBLE = 1, PARTIAL = 2;
+
+    /** Entries start[k] .. end[k]-1 of the grid are the k-th range */
+    final int[] start = new int[9];
+    final int[] end = new int[9];
+    /** True if the Boids of the k-th range must be tested against the field of view */
+    final boolean[] testAngle = new boolean[9];
+    /** Number of ranges */
+    int count;
+
+    /** Fills the ranges of a Boid
+     *
+     * @param grid grid rebuilt for the current step
+     * @param x x coordinate of the Boid
+     * @param y y coordinate of the Boid
+     * @param velX x component of the velocity of the Boid
+     * @param velY y component of the velocity of the Boid
+     * @param useFieldOfView true to classify the cells against the field of view
+     * @param cosHalfAngle cosine of half of the detection angle
+     * @param sinHalfAngle sine of half of the detection angle
+     * @param mergeVisible true to merge cells inside and on the edge of the field
+     *                     of view into one range, which is then tested, for
+     *                     kernels that prefer longer ranges
+     */
+    void fill(SpatialGrid grid, double x, double y, double velX, double velY,
+              boolean useFieldOfView, double cosHalfAngle, double sinHalfAngle, boolean mergeVisible) {
+        final int columns = grid.getColumns();
+        final int column = grid.columnOf(x), row = grid.rowOf(y);
+        final int firstColumn = grid.firstNeighborColumn(column), lastColumn = grid.lastNeighborColumn(column);
+        final int firstRow = grid.firstNeighborRow(row), lastRow = grid.lastNeighborRow(row);
+        final double width = grid.getCellWidth(), height = grid.getCellHeight();
+        final boolean classify = useFieldOfView && grid.hasUniqueImages();
+        final boolean beforeHalfTurn = cosHalfAngle > 0;
+        final double margin = MARGIN * (Math.abs(velX) + Math.abs(velY)) * (width + height + grid.getWidth() + grid.getHeight());
+        // Normals of the edges, pointing into the field of view, and of the front half plane
+        final double normal1X = sinHalfAngle*velX + cosHalfAngle*velY, normal1Y = sinHalfAngle*velY - cosHalfAngle*velX;
+        final double normal2X = sinHalfAngle*velX - cosHalfAngle*velY, normal2Y = sinHalfAngle*velY + cosHalfAngle*velX;
+        // The smallest dot product of a normal and a corner of the cell in the first
+        // column of a row, its change per column and the difference of the largest one
+        final double step1 = normal1X * width, step2 = normal2X * width, stepFront = velX * width;
+        final double span1 = Math.abs(step1) + Math.abs(normal1Y) * height;
+        final double span2 = Math.abs(step2) + Math.abs(normal2Y) * height;
+        final double spanFront = Math.abs(stepFront) + Math.abs(velY) * height;
+        final double left = firstColumn * width - x;
+        final double columnPart1 = normal1X * (normal1X > 0 ? left : left + width);
+        final double columnPart2 = normal2X * (normal2X > 0 ? left : left + width);
+        final double columnPartFront = velX * (velX > 0 ? left : left + width);
+
+        int count = 0;
+        for (int r = firstRow; r <= lastRow; r++) {
+            final int rowBase = grid.wrapRow(r) * columns;
+            final boolean lastRowOfWorld = !grid.isToroidal() && r == grid.getRows() - 1;
+            final double top = r * height - y;
+            double min1 = columnPart1 + normal1Y * (normal1Y > 0 ? top : top + height);
+            double min2 = columnPart2 + normal2Y * (normal2Y > 0 ? top : top + height);
+            double minFront = columnPartFront + velY * (velY > 0 ? top : top + height);
+            int previousCell = -2;
+            int previousClass = HIDDEN;
+            for (int c = firstColumn; c <= lastColumn; c++, min1 += step1, min2 += step2, minFront += stepFront) {
+                int visibility = useFieldOfView ? PARTIAL : VISIBLE;
+                if (classify && !lastRowOfWorld && (grid.isToroidal() || c != columns - 1)) {
+                    if (beforeHalfTurn) {
+                        if (min1 + span1 < -margin || min2 + span2 < -margin || minFront + spanFront < -margin) visibility = HIDDEN;
+                        else if (min1 > margin && min2 > margin) visibility = VISIBLE;
+                    }
+                    else {
+                        if (min1 + span1 < -margin && min2 + span2 < -margin) visibility = HIDDEN;
+                        else if (min1 > margin || min2 > margin || minFront > margin) visibility = VISIBLE;
+                    }
+                    if (mergeVisible && visibility == VISIBLE) visibility = PARTIAL;
+                }
+                if (visibility == HIDDEN) {
+                    previousClass = HIDDEN;
+                    continue;
+                }
+                int cell = rowBase + grid.wrapColumn(c);
+                if (visibility == previousClass && cell == previousCell + 1) {
+                    end[count - 1] = grid.cellEnd(cell);
+                }
+                else {
+                    start[count] = grid.cellStart(cell);
+                    end[count] = grid.cellEnd(cell);
+                    testAngle[count] = visibility == PARTIAL;
+                    count++;
+                }
+                previousCell = cell;
+                previousClass = visibility;
+            }
+        }
+        this.count = count;
+    }
+}
@@ -0,0 +1,99 @@
+package components;
+
+import java.util.Arrays;
+
+/** A copy of the positions and velocities of all Boids after
+ *  one simulation step, along with the positions before the step.
+ *  Snapshots are written by the simulation thread and read by the
+ *  renderer, see TripleBuffer.
+ *
+ *  The step covers the time from getTime() to getTime() + getTickNanos(),
+ *  so the renderer can interpolate between the previous and current
+ *  positions when it draws between two ticks.
+ */
+public class BoidSnapshot {
+    public double[] prevX = new double[0];
+    public double[] prevY = new double[0];
+    public double[] px = new double[0];
+    public double[] py = new double[0];
+    public double[] vx = new double[0];
+    public double[] vy = new double[0];
+    private int size = 0;
+    private long time = 0;
+    private long tickNanos = 1;
+
+    /** Copies the positions of the given store as the positions
+     *  before the step. Called before the Boids are moved. Like all
+     *  copies of the snapshot, Boid i of the snapshot is the Boid with
+     *  id i, wherever the store keeps it.
+     *
+     * @param store store to copy
+     */
+    public void copyPreviousFrom(BoidStore store) {
+        size = store.size();
+        ensureCapacity(store.capacity());
+        store.copyInIdOrder(store.px, prevX);
+        store.copyInIdOrder(store.py, prevY);
+    }
+
+    /** Copies the state of the given store into this snapshot.
+     *  Arrays are only reallocated when the store has grown
+     *  past the capacity of this snapshot.
+     *
+     * @param store store to copy
+     * @param time scheduled time of the step in System.nanoTime() units
+     * @param tickNanos length of the step in nanoseconds
+     */
+    public void copyFrom(BoidStore store, long time, long tickNanos) {
+        size = store.size();
+        ensureCapacity(store.capacity());
+        store.copyInIdOrder(store.px, px);
+        store.copyInIdOrder(store.py, py);
+        store.copyInIdOrder(store.vx, vx);
+        store.copyInIdOrder(store.vy, vy);
+        this.time = time;
+        this.tickNanos = tickNanos;
+    }
+
+    /** Moves the previous positions of Boids that wrapped around the edges
+     *  of a toroidal world during the step to the other side of the edge,
+     *  so they are drawn moving across it instead of across the world.
+     *
+     * @param width width of the world
+     * @param height height of the world
+     */
+    public void unwrapPrevious(double width, double height) {
+        for (int i = 0; i < size; i++) {
+            if (px[i] - prevX[i] > width / 2) prevX[i] += width;
+            else if (prevX[i] - px[i] > width / 2) prevX[i] -= width;
+            if (py[i] - prevY[i] > height / 2) prevY[i] += height;
+            else if (prevY[i] - py[i] > height / 2) prevY[i] -= height;
+        }
+    }
+
+    /** Returns how far the given time is into the step of this snapshot,
+     *  from 0 (previous positions) to 1 (current positions)
+     *
+     * @param now time in System.nanoTime() units
+     * @return interpolation factor between 0 and 1
+     */
+    public double alphaAt(long now) {
+        return Math.min(Math.max((double) (now - time) / tickNanos, 0), 1);
+    }
+
+    /** Grows the arrays to the given capacity. The previous positions are
+     *  kept, as they may have been copied from a store of smaller capacity. */
+    private void ensureCapacity(int capacity) {
+        if (px.length >= capacity) return;
+        prevX = Arrays.copyOf(prevX, capacity);
+        prevY = Arrays.copyOf(prevY, capacity);
+        px = new double[capacity];
+        py = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+    }
+
+    public int size() { return size; }
+    public long getTime() { return time; }
+    public long getTickNanos() { return tickNanos; }
+}
@@ -0,0 +1,272 @@
+package components;
+
+import java.util.Arrays;
+
+/** Stores the state of all Boids in primitive arrays (structure of arrays).
+ *  Boid i has position (px[i], py[i]), velocity (vx[i], vy[i]) and
+ *  acceleration (ax[i], ay[i]). Only the first size() slots are in use.
+ *
+ *  The slots after size() form a pool of free Boids. Removing Boids
+ *  returns their slots to the pool and adding takes slots from it, so
+ *  the arrays are only replaced when the pool runs out. Capacity then
+ *  at least doubles. References to the arrays must not be kept over
+ *  calls to add, extend, ensureCapacity or reorder.
+ *
+ *  Every Boid also has an id, id[i], that stays the same when reorder
+ *  moves the Boid to another slot. The ids of the Boids in use are
+ *  always 0 .. size()-1, and until the first reorder the id of a Boid
+ *  is its index. New Boids get the next free ids and truncate removes
+ *  the Boids with the highest ids, so a reordered store adds and removes
+ *  the same Boids as one that was never reordered.
+ *
+ *  Adding, removing and reordering Boids count as changes, see
+ *  getChangeCount. Setting and moving Boids do not, so set can be called
+ *  from several threads at once on different Boids.
+ */
+public class BoidStore {
+    public double[] px;
+    public double[] py;
+    public double[] vx;
+    public double[] vy;
+    public double[] ax;
+    public double[] ay;
+    public int[] id;
+    private int size = 0;
+    private long changes = 0;
+    // True while every Boid is at the index of its id
+    private boolean inIdOrder = true;
+    // Arrays that reorder fills and swaps with the ones in use
+    private double[][] spareState = null;
+    private int[] spareId = null;
+
+    public BoidStore() { this(16); }
+
+    public BoidStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        px = new double[capacity];
+        py = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        ax = new double[capacity];
+        ay = new double[capacity];
+        id = new int[capacity];
+    }
+
+    /** Adds a new Boid to the end of the store. The acceleration of
+     *  the Boid is set to its velocity, as velocity is replaced by
+     *  acceleration on every move.
+     *
+     * @param x x coordinate of the Boid
+     * @param y y coordinate of the Boid
+     * @param velX x component of the velocity of the Boid
+     * @param velY y component of the velocity of the Boid
+     * @return index of the added Boid
+     */
+    public int add(double x, double y, double velX, double velY) {
+        ensureCapacity(size + 1);
+        set(size, x, y, velX, velY);
+        id[size] = size;
+        changes++;
+        return size++;
+    }
+
+    /** Adds the given number of Boids to the end of the store at once.
+     *  The state of the new Boids is undefined until set is called.
+     *
+     * @param count number of Boids to add
+     * @return index of the first added Boid
+     */
+    public int extend(int count) {
+        ensureCapacity(size + count);
+        int first = size;
+        size += count;
+        for (int i = first; i < size; i++) id[i] = i;
+        changes++;
+        return first;
+    }
+
+    /** Sets the state of the Boid with the given index. The acceleration
+     *  is set to the velocity, as in add.
+     *
+     * @param i index of the Boid
+     * @param x x coordinate of the Boid
+     * @param y y coordinate of the Boid
+     * @param velX x component of the velocity of the Boid
+     * @param velY y component of the velocity of the Boid
+     */
+    public void set(int i, double x, double y, double velX, double velY) {
+        px[i] = x;
+        py[i] = y;
+        vx[i] = velX;
+        vy[i] = velY;
+        ax[i] = velX;
+        ay[i] = velY;
+    }
+
+    /** Makes room for at least the given number of Boids without
+     *  changing the size
+     *
+     * @param minCapacity number of Boids that must fit
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > px.length) grow(Math.max(minCapacity, 2 * px.length));
+    }
+
+    /** Removes the Boids with the highest ids until the store has the
+     *  given size. Until the first reorder these are the Boids at the end
+     *  of the store, otherwise the remaining Boids are moved together,
+     *  keeping their order.
+     *
+     * @param newSize the new size, ignored if not smaller than current size
+     */
+    public void truncate(int newSize) {
+        newSize = Math.max(Math.min(newSize, size), 0);
+        if (!inIdOrder) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (id[i] >= newSize) continue;
+                px[kept] = px[i];
+                py[kept] = py[i];
+                vx[kept] = vx[i];
+                vy[kept] = vy[i];
+                ax[kept] = ax[i];
+                ay[kept] = ay[i];
+                id[kept++] = id[i];
+            }
+        }
+        size = newSize;
+        changes++;
+    }
+
+    /** Moves the Boids to new slots: the Boid in slot order[k] moves to
+     *  slot k. The arrays are swapped with spare ones, which are kept for
+     *  the next reorder.
+     *
+     * @param order permutation of 0 .. size()-1
+     */
+    public void reorder(int[] order) {
+        if (spareState == null || spareId.length != px.length) {
+            spareState = new double[6][px.length];
+            spareId = new int[px.length];
+        }
+        double[] newPx = spareState[0], newPy = spareState[1], newVx = spareState[2];
+        double[] newVy = spareState[3], newAx = spareState[4], newAy = spareState[5];
+        int[] newId = spareId;
+        for (int k = 0; k < size; k++) {
+            int i = order[k];
+            newPx[k] = px[i];
+            newPy[k] = py[i];
+            newVx[k] = vx[i];
+            newVy[k] = vy[i];
+            newAx[k] = ax[i];
+            newAy[k] = ay[i];
+            newId[k] = id[i];
+        }
+        spareState = new double[][] { px, py, vx, vy, ax, ay };
+        spareId = id;
+        px = newPx;
+        py = newPy;
+        vx = newVx;
+        vy = newVy;
+        ax = newAx;
+        ay = newAy;
+        id = newId;
+        inIdOrder = false;
+        changes++;
+    }
+
+    /** Copies the given array of this store in id order: entry id[i] of
+     *  the target is entry i of the source.
+     *
+     * @param source px, py, vx, vy, ax or ay of this store
+     * @param target array of at least size() entries
+     */
+    public void copyInIdOrder(double[] source, double[] target) {
+        if (inIdOrder) System.arraycopy(source, 0, target, 0, size);
+        else for (int i = 0; i < size; i++) target[id[i]] = source[i];
+    }
+
+    /** Moves the Boid with the given index by its acceleration, which also
+     *  becomes its new velocity. Keeps the Boid inside the world.
+     *
+     * @param i index of the Boid
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void move(int i, double xLimit, double yLimit) {
+        px[i] += ax[i];
+        py[i] += ay[i];
+        vx[i] = ax[i];
+        vy[i] = ay[i];
+        if (px[i] < 0) px[i] = 1;
+        if (py[i] < 0) py[i] = 1;
+        if (px[i] > xLimit) px[i] = xLimit-1;
+        if (py[i] > yLimit) py[i] = yLimit-1;
+    }
+
+    /** Moves the Boid with the given index like move and rounds its
+     *  position and velocity to single precision
+     *
+     * @param i index of the Boid
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void moveSingle(int i, double xLimit, double yLimit) {
+        move(i, xLimit, yLimit);
+        roundToSingle(i);
+    }
+
+    /** Moves the Boid with the given index like move, but a Boid that
+     *  leaves the world comes back at the opposite edge
+     *
+     * @param i index of the Boid
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void moveWrapped(int i, double xLimit, double yLimit) {
+        px[i] = wrap(px[i] + ax[i], xLimit);
+        py[i] = wrap(py[i] + ay[i], yLimit);
+        vx[i] = ax[i];
+        vy[i] = ay[i];
+    }
+
+    /** Rounds the position and velocity of the Boid with the given index
+     *  to single precision
+     *
+     * @param i index of the Boid
+     */
+    public void roundToSingle(int i) {
+        px[i] = (float) px[i];
+        py[i] = (float) py[i];
+        vx[i] = (float) vx[i];
+        vy[i] = (float) vy[i];
+    }
+
+    private static double wrap(double coordinate, double limit) {
+        if (limit <= 0) return coordinate;
+        return coordinate - Math.floor(coordinate / limit) * limit;
+    }
+
+    private void grow(int capacity) {
+        px = Arrays.copyOf(px, capacity);
+        py = Arrays.copyOf(py, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        ax = Arrays.copyOf(ax, capacity);
+        ay = Arrays.copyOf(ay, capacity);
+        id = Arrays.copyOf(id, capacity);
+        spareState = null;
+        spareId = null;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return px.length; }
+
+    /** Returns true if every Boid is at the index of its id, which is the
+     *  case until the first reorder */
+    public boolean isInIdOrder() { return inIdOrder; }
+
+    /** Returns the number of calls that added, removed or reordered Boids so far.
+     *  Cached data about the Boids is stale if this has changed. */
+    public long getChangeCount() { return changes; }
+}
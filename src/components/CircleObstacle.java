@@ -0,0 +1,37 @@
+package components;
+
+/** A circular obstacle */
+public class CircleObstacle implements Obstacle {
+    private final double centerX;
+    private final double centerY;
+    private final double radius;
+
+    /** Creates a circular obstacle
+     *
+     * @param centerX x coordinate of the center
+     * @param centerY y coordinate of the center
+     * @param radius radius, at least 0
+     */
+    public CircleObstacle(double centerX, double centerY, double radius) {
+        if (radius < 0) throw new IllegalArgumentException("Negative radius " + radius);
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.radius = radius;
+    }
+
+    @Override
+    public double signedDistance(double x, double y) {
+        double dx = x - centerX;
+        double dy = y - centerY;
+        return Math.sqrt(dx*dx + dy*dy) - radius;
+    }
+
+    @Override public double getMinX() { return centerX - radius; }
+    @Override public double getMinY() { return centerY - radius; }
+    @Override public double getMaxX() { return centerX + radius; }
+    @Override public double getMaxY() { return centerY + radius; }
+
+    public double getCenterX() { return centerX; }
+    public double getCenterY() { return centerY; }
+    public double getRadius() { return radius; }
+}
@@ -1,98 +1,53 @@
 package components;
 
-import javafx.scene.shape.Circle;
+/** Entities represent Boids in the simulation. The state of the Boids
+ *  lives in a BoidStore, whose indices change when the store is
+ *  reordered, so this class only gives new Boids their initial state.
+ */
+public final class Entity {
 
-import java.util.Random;
+    /** Number of random counters used by spawn */
+    public static final int SPAWN_COUNTERS = 3;
 
-/** Entities represent Boids in the simulation */
-public class Entity {
-    private Vector2D position = null;
-    private Vector2D velocity = null;
-    private Vector2D acceleration = null;
-    private double speed = 0;
-    private Circle shape = null;
+    private Entity() {}
 
-    /** Creates a new entity with random parameters
+    /** Adds a Boid with random velocity to the given store
      *
-     * @param x x coordinate of the entity
-     * @param y y coordinate of the entity
+     * @param store store to add the Boid to
+     * @param x x coordinate of the Boid
+     * @param y y coordinate of the Boid
+     * @param random source of the velocity
+     * @param stream random stream to use
+     * @param counter first of the SPAWN_COUNTERS random counters to use
+     * @return index of the added Boid
      */
-    public Entity(double x, double y) {
-        Random randGen = new Random();
-        this.position = new Vector2D(x, y);
-        this.speed = randGen.nextDouble() * 3 + 1;
-        this.velocity = new Vector2D(randGen.nextDouble()*5 - 2.5, randGen.nextDouble()*5 - 2.5).setMagnitude(speed);
-        this.acceleration = new Vector2D(this.velocity);
+    public static int spawn(BoidStore store, double x, double y, SimulationRandom random, long stream, long counter) {
+        int index = store.extend(1);
+        spawn(store, index, x, y, random, stream, counter);
+        return index;
     }
 
-    /** Calculates the distance between this and the given entity
+    /** Gives the Boid with the given index a location and a random
+     *  velocity. Allocates nothing, so it can be used to fill slots made
+     *  with BoidStore.extend in bulk.
      *
-     * @param e another entity
-     * @return the distance between this and the other entity
+     * @param store store that holds the Boid
+     * @param index index of the Boid
+     * @param x x coordinate of the Boid
+     * @param y y coordinate of the Boid
+     * @param random source of the velocity
+     * @param stream random stream to use
+     * @param counter first of the SPAWN_COUNTERS random counters to use
      */
-    public double distanceFrom(Entity e) {
-        return Math.sqrt(Math.pow(e.position.x - this.position.x, 2) + Math.pow(e.position.y - this.position.y, 2));
+    public static void spawn(BoidStore store, int index, double x, double y, SimulationRandom random, long stream, long counter) {
+        double speed = random.nextDouble(stream, counter) * 3 + 1;
+        double velX = random.nextDouble(stream, counter + 1)*5 - 2.5;
+        double velY = random.nextDouble(stream, counter + 2)*5 - 2.5;
+        double len = Math.sqrt(velX*velX + velY*velY);
+        if (len != 0) {
+            velX = velX * speed / len;
+            velY = velY * speed / len;
+        }
+        store.set(index, x, y, velX, velY);
     }
-
-    /** Calculates the distance between this entity and the given location
-     *
-     * @param x the x of the location
-     * @param y the y of the location
-     * @return the distance between this entity and the location
-     */
-    public double distanceFrom(double x, double y) {
-        return Math.sqrt(Math.pow(x - this.position.x, 2) + Math.pow(y - this.position.y, 2));
-    }
-
-    /** Moves the entity and the javafx shape representing this
-     *  entity
-     *
-     * @param xLimit x limit of the world
-     * @param yLimit y limit of the world
-     */
-    public void move(double xLimit, double yLimit) {
-        this.position.add(acceleration);
-        this.velocity.setTo(acceleration);
-        if (position.x < 0) this.position.x = 1;
-        if (position.y < 0) this.position.y = 1;
-        if (position.x > xLimit) this.position.x = xLimit-1;
-        if (position.y > yLimit) this.position.y = yLimit-1;
-        if (shape == null) return;
-        shape.setCenterX(this.position.x);
-        shape.setCenterY(this.position.y);
-    }
-
-    /** Calculates and returns the angle between the velocity
-     *  of this entity and the direction from this entity
-     *  to the given entity. Returned angles are in degrees
-     *
-     * @param another another entity
-     * @return angle between the heading of this entity and
-     * direction to given entity in degrees
-     */
-    public double angleToEntity(Entity another) {
-        Vector2D normalizedVecToAnother = new Vector2D(another.position)
-                .subtract(this.position)
-                .getNormalized();
-        Vector2D normalizedVelocity = this.velocity.getNormalized();
-
-        // 57.2957795131 = 180/pi (conversion multiplier)
-        return Math.acos(normalizedVelocity.dotProduct(normalizedVecToAnother)) * 57.2957795131;
-    }
-
-    public void setShape(Circle shape) { this.shape = shape; }
-
-    public Vector2D getVelocity() { return velocity; }
-    public void setVelocity(Vector2D velocity) { this.velocity = velocity; }
-
-    public Vector2D getAcceleration() { return acceleration; }
-
-    public Vector2D getPosition() { return position; }
-    public void setPosition(Vector2D position) { this.position = position; }
-
-    public double getSpeed() { return speed; }
-    public void setSpeed(double speed) { this.speed = speed; }
-
-    public double getX() { return position.x; }
-    public double getY() { return position.y; }
 }
@@ -0,0 +1,111 @@
+package components;
+
+/** Field of view tests without trigonometry or square roots.
+ *
+ *  A Boid with velocity v sees a point at offset u from it if the angle
+ *  between v and u is at most half of the detection angle, that is, if
+ *  dot(v, u) >= minDot * |u| where minDot = cos(angle / 2) * |v|.
+ *  The test is done on squares that keep their sign, a*|a|, which
+ *  preserves the order, so it needs no branches.
+ *
+ *  Quadtree nodes are tested as boxes, and BlockRanges tests grid cells
+ *  the same way.
+ */
+final class FieldOfView {
+
+    /** Detection angles from this many degrees up are not tested. The grid cells
+     *  around a Boid are about as large as its radii, so a wider field of view
+     *  hides hardly any whole cell, and testing the Boids of the cells one by
+     *  one costs more than the hidden neighbors save. */
+    static final double MAX_TESTED_ANGLE = 180;
+    // Relative margin of isBoxVisible, far above the rounding error of single precision
+    private static final double MARGIN = 1e-5;
+
+    private FieldOfView() {}
+
+    /** Returns true if a point is outside the field of view
+     *
+     * @param dot dot product of the velocity and the offset to the point
+     * @param minDot cosine of half of the detection angle times speed
+     * @param squaredDistance squared length of the offset
+     * @return true if the point is not seen
+     */
+    static boolean isHidden(double dot, double minDot, double squaredDistance) {
+        return dot*Math.abs(dot) < minDot*Math.abs(minDot)*squaredDistance;
+    }
+
+    /** Single precision version of isHidden, for the float kernels */
+    static boolean isHidden(float dot, float minDot, float squaredDistance) {
+        return dot*Math.abs(dot) < minDot*Math.abs(minDot)*squaredDistance;
+    }
+
+    /** Returns true if every point of a box is outside the field of view.
+     *  The box is given relative to the Boid. The test is conservative: when
+     *  the detection angle is below 180 degrees only boxes completely behind
+     *  the Boid are reported.
+     *
+     * @param left smallest x of the box minus the x of the Boid
+     * @param top smallest y of the box minus the y of the Boid
+     * @param right largest x of the box minus the x of the Boid
+     * @param bottom largest y of the box minus the y of the Boid
+     * @param velX x component of the velocity of the Boid
+     * @param velY y component of the velocity of the Boid
+     * @param minDot cosine of half of the detection angle times speed
+     * @return true if no point of the box can be seen
+     */
+    static boolean isBoxHidden(double left, double top, double right, double bottom,
+                               double velX, double velY, double minDot) {
+        // Below 180 degrees the hidden region is not convex, but it contains
+        // the half plane behind the Boid, which is. Otherwise the hidden region
+        // is a convex cone. A box is inside a convex region if its corners are.
+        if (minDot > 0) {
+            return velX*left + velY*top < 0 && velX*right + velY*top < 0
+                    && velX*left + velY*bottom < 0 && velX*right + velY*bottom < 0;
+        }
+        return isCornerHidden(left, top, velX, velY, minDot) && isCornerHidden(right, top, velX, velY, minDot)
+                && isCornerHidden(left, bottom, velX, velY, minDot) && isCornerHidden(right, bottom, velX, velY, minDot);
+    }
+
+    /** Returns true if every point of a box is inside the field of view.
+     *  The box is given relative to the Boid.
+     *
+     *  The edges of the field of view lie on two lines through the Boid.
+     *  Below 180 degrees the field of view is the intersection of the half
+     *  planes on the inner sides of these lines, and otherwise their union,
+     *  which also contains the half plane in front of the Boid. A box is in
+     *  a half plane if its corner farthest behind the line is. The test is
+     *  conservative: boxes within a small margin of a line are not reported,
+     *  so rounding in the test of a single Boid cannot disagree with it.
+     *
+     * @param left smallest x of the box minus the x of the Boid
+     * @param top smallest y of the box minus the y of the Boid
+     * @param right largest x of the box minus the x of the Boid
+     * @param bottom largest y of the box minus the y of the Boid
+     * @param velX x component of the velocity of the Boid
+     * @param velY y component of the velocity of the Boid
+     * @param cosHalfAngle cosine of half of the detection angle
+     * @param sinHalfAngle sine of half of the detection angle
+     * @return true if every point of the box can be seen
+     */
+    static boolean isBoxVisible(double left, double top, double right, double bottom,
+                                double velX, double velY, double cosHalfAngle, double sinHalfAngle) {
+        double margin = MARGIN * (Math.abs(velX) + Math.abs(velY)) * (right - left + bottom - top);
+        // Normals of the edges, pointing into the field of view
+        boolean inside1 = isBoxInFront(left, top, right, bottom,
+                sinHalfAngle*velX + cosHalfAngle*velY, sinHalfAngle*velY - cosHalfAngle*velX, margin);
+        boolean inside2 = isBoxInFront(left, top, right, bottom,
+                sinHalfAngle*velX - cosHalfAngle*velY, sinHalfAngle*velY + cosHalfAngle*velX, margin);
+        if (cosHalfAngle >= 0) return inside1 && inside2;
+        return inside1 || inside2 || isBoxInFront(left, top, right, bottom, velX, velY, margin);
+    }
+
+    /** Returns true if dot(normal, u) > margin for every point u of the box */
+    private static boolean isBoxInFront(double left, double top, double right, double bottom,
+                                        double normalX, double normalY, double margin) {
+        return normalX * (normalX > 0 ? left : right) + normalY * (normalY > 0 ? top : bottom) > margin;
+    }
+
+    private static boolean isCornerHidden(double ux, double uy, double velX, double velY, double minDot) {
+        return isHidden(velX*ux + velY*uy, minDot, ux*ux + uy*uy);
+    }
+}
@@ -0,0 +1,96 @@
+package components;
+
+/** Scalar neighbor loop in single precision.
+ *
+ *  Reads the float copies of the positions and velocities in SpatialGrid,
+ *  which take half of the memory bandwidth of the doubles, and sums in
+ *  float. The candidates are walked in the ranges of BlockRanges, and
+ *  only the ranges on the edge of the field of view test it per Boid.
+ */
+final class FloatKernel {
+    private static final float MIN_DISTANCE = 0.001f;
+
+    private FloatKernel() {}
+
+    /** Sums the neighbors of the Boid in the given grid entry into the given sums
+     *
+     * @param grid grid rebuilt for the current step
+     * @param self grid entry of the Boid, which is not its own neighbor
+     * @param x x coordinate of the Boid
+     * @param y y coordinate of the Boid
+     * @param velX x component of the velocity of the Boid
+     * @param velY y component of the velocity of the Boid
+     * @param useFieldOfView true to skip neighbors outside the field of view
+     * @param minDot neighbors are seen if the dot product of the velocity and the
+     *               direction to the neighbor is at least minDot times the distance
+     * @param cosHalfAngle cosine of half of the detection angle
+     * @param sinHalfAngle sine of half of the detection angle
+     * @param alignmentDistance alignment radius
+     * @param cohesionDistance cohesion radius
+     * @param separationDistance separation radius
+     * @param random source of the offsets of coincident Boids
+     * @param offsetStream random stream of the offsets of the step
+     * @param offsetCounter first random counter of the offsets of the Boid
+     * @param sums sums to fill
+     */
+    static void sumNeighbors(SpatialGrid grid, int self, float x, float y, float velX, float velY,
+                             boolean useFieldOfView, float minDot, double cosHalfAngle, double sinHalfAngle,
+                             float alignmentDistance, float cohesionDistance, float separationDistance,
+                             SimulationRandom random, long offsetStream, long offsetCounter,
+                             NeighborSums sums) {
+        final float[] sx = grid.floatX, sy = grid.floatY, svx = grid.floatVx, svy = grid.floatVy;
+        int alignmentNeighbors = 0, cohesionNeighbors = 0, separationNeighbors = 0;
+        int coincident = 0;
+        float alignmentX = 0, alignmentY = 0, cohesionX = 0, cohesionY = 0, separationX = 0, separationY = 0;
+
+        final boolean toroidal = grid.isToroidal();
+        final float width = (float) grid.getWidth(), height = (float) grid.getHeight();
+        if (sums.ranges == null) sums.ranges = new BlockRanges();
+        final BlockRanges ranges = sums.ranges;
+        ranges.fill(grid, x, y, velX, velY, useFieldOfView, cosHalfAngle, sinHalfAngle, false);
+        for (int range = 0; range < ranges.count; range++) {
+            final int start = ranges.start[range], end = ranges.end[range];
+            final boolean testAngle = ranges.testAngle[range];
+            for (int k = start; k < end; k++) {
+                if (k == self) continue;
+                float ox = toroidal ? PeriodicBoundary.image(sx[k], x, width) : sx[k];
+                float oy = toroidal ? PeriodicBoundary.image(sy[k], y, height) : sy[k];
+                float dx = x - ox;
+                float dy = y - oy;
+                float squaredDistance = dx*dx + dy*dy;
+                if (testAngle && FieldOfView.isHidden(-(velX*dx + velY*dy), minDot, squaredDistance)) continue;
+                float dist = Math.max((float) Math.sqrt(squaredDistance), MIN_DISTANCE);
+                if (dist < alignmentDistance) {
+                    alignmentNeighbors++;
+                    alignmentX += svx[k];
+                    alignmentY += svy[k];
+                }
+                if (dist < cohesionDistance) {
+                    cohesionNeighbors++;
+                    cohesionX += ox;
+                    cohesionY += oy;
+                }
+                if (dist < separationDistance) {
+                    separationNeighbors++;
+                    if (dx == 0 && dy == 0) {
+                        long counter = offsetCounter + 4L * coincident++;
+                        dx = (float) random.nextOffset(offsetStream, counter);
+                        dy = (float) random.nextOffset(offsetStream, counter + 2);
+                    }
+                    separationX += dx / (dist*dist);
+                    separationY += dy / (dist*dist);
+                }
+            }
+        }
+
+        sums.alignmentNeighbors = alignmentNeighbors;
+        sums.cohesionNeighbors = cohesionNeighbors;
+        sums.separationNeighbors = separationNeighbors;
+        sums.alignmentX = alignmentX;
+        sums.alignmentY = alignmentY;
+        sums.cohesionX = cohesionX;
+        sums.cohesionY = cohesionY;
+        sums.separationX = separationX;
+        sums.separationY = separationY;
+    }
+}
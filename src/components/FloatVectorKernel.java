@@ -0,0 +1,180 @@
+package components;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** Single precision version of VectorKernel.
+ *
+ *  Reads the float copies of SpatialGrid and computes in float lanes,
+ *  so a vector holds twice as many candidates and the candidate loop
+ *  moves half as many bytes. The structure is the same as VectorKernel.
+ *
+ *  Only used if Simulation.VECTOR_API_AVAILABLE is true.
+ */
+final class FloatVectorKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final float MIN_DISTANCE = 0.001f;
+
+    private FloatVectorKernel() {}
+
+    /** Sums the neighbors of Boid i into the given sums
+     *
+     * @param grid grid rebuilt for the current step
+     * @param x x coordinate of the Boid
+     * @param y y coordinate of the Boid
+     * @param velX x component of the velocity of the Boid
+     * @param velY y component of the velocity of the Boid
+     * @param useFieldOfView true to skip neighbors outside the field of view
+     * @param minDot neighbors are seen if the dot product of the velocity and the
+     *               direction to the neighbor is at least minDot times the distance
+     * @param cosHalfAngle cosine of half of the detection angle
+     * @param sinHalfAngle sine of half of the detection angle
+     * @param alignmentDistance alignment radius
+     * @param cohesionDistance cohesion radius
+     * @param separationDistance separation radius
+     * @param random source of the offsets of coincident Boids
+     * @param offsetStream random stream of the offsets of the step
+     * @param offsetCounter first random counter of the offsets of the Boid
+     * @param sums sums to fill
+     */
+    static void sumNeighbors(SpatialGrid grid, float x, float y, float velX, float velY,
+                             boolean useFieldOfView, float minDot, double cosHalfAngle, double sinHalfAngle,
+                             float alignmentDistance, float cohesionDistance, float separationDistance,
+                             SimulationRandom random, long offsetStream, long offsetCounter,
+                             NeighborSums sums) {
+        final float[] sx = grid.floatX, sy = grid.floatY, svx = grid.floatVx, svy = grid.floatVy;
+        FloatVector xs = FloatVector.broadcast(SPECIES, x);
+        FloatVector ys = FloatVector.broadcast(SPECIES, y);
+        FloatVector velXs = FloatVector.broadcast(SPECIES, velX);
+        FloatVector velYs = FloatVector.broadcast(SPECIES, velY);
+        FloatVector zero = FloatVector.zero(SPECIES);
+        FloatVector one = FloatVector.broadcast(SPECIES, 1f);
+        FloatVector alignmentXs = zero, alignmentYs = zero;
+        FloatVector cohesionXs = zero, cohesionYs = zero;
+        FloatVector separationXs = zero, separationYs = zero;
+        int alignmentNeighbors = 0, cohesionNeighbors = 0, separationNeighbors = 0;
+        int coincident = 0;
+        float alignmentX = 0, alignmentY = 0, cohesionX = 0, cohesionY = 0, separationX = 0, separationY = 0;
+
+        final boolean toroidal = grid.isToroidal();
+        final float width = (float) grid.getWidth(), height = (float) grid.getHeight();
+        if (sums.ranges == null) sums.ranges = new BlockRanges();
+        final BlockRanges ranges = sums.ranges;
+        ranges.fill(grid, x, y, velX, velY, useFieldOfView, cosHalfAngle, sinHalfAngle, true);
+        for (int range = 0; range < ranges.count; range++) {
+            final int start = ranges.start[range], end = ranges.end[range];
+            final boolean testAngle = ranges.testAngle[range];
+            int k = start;
+            for (int bound = start + SPECIES.loopBound(end - start); k < bound; k += SPECIES.length()) {
+                FloatVector ox = FloatVector.fromArray(SPECIES, sx, k);
+                FloatVector oy = FloatVector.fromArray(SPECIES, sy, k);
+                if (toroidal) {
+                    ox = image(ox, xs, width);
+                    oy = image(oy, ys, height);
+                }
+                FloatVector dx = xs.sub(ox);
+                FloatVector dy = ys.sub(oy);
+                FloatVector distance = dx.mul(dx).add(dy.mul(dy)).sqrt();
+                FloatVector dist = distance.max(MIN_DISTANCE);
+                VectorMask<Float> seen = SPECIES.maskAll(true);
+                if (testAngle) seen = velXs.mul(dx).add(velYs.mul(dy)).neg().compare(VectorOperators.GE, distance.mul(minDot));
+
+                VectorMask<Float> alignment = dist.compare(VectorOperators.LT, alignmentDistance).and(seen);
+                alignmentNeighbors += alignment.trueCount();
+                alignmentXs = alignmentXs.add(FloatVector.fromArray(SPECIES, svx, k), alignment);
+                alignmentYs = alignmentYs.add(FloatVector.fromArray(SPECIES, svy, k), alignment);
+
+                VectorMask<Float> cohesion = dist.compare(VectorOperators.LT, cohesionDistance).and(seen);
+                cohesionNeighbors += cohesion.trueCount();
+                cohesionXs = cohesionXs.add(ox, cohesion);
+                cohesionYs = cohesionYs.add(oy, cohesion);
+
+                VectorMask<Float> separation = dist.compare(VectorOperators.LT, separationDistance).and(seen);
+                if (separation.anyTrue()) {
+                    separationNeighbors += separation.trueCount();
+                    FloatVector inverse = one.div(dist.mul(dist));
+                    separationXs = separationXs.add(dx.mul(inverse), separation);
+                    separationYs = separationYs.add(dy.mul(inverse), separation);
+                    coincident += dx.eq(0).and(dy.eq(0)).and(separation).trueCount();
+                }
+            }
+
+            // Scalar tail of the range
+            for (; k < end; k++) {
+                float ox = toroidal ? PeriodicBoundary.image(sx[k], x, width) : sx[k];
+                float oy = toroidal ? PeriodicBoundary.image(sy[k], y, height) : sy[k];
+                float dx = x - ox;
+                float dy = y - oy;
+                float squaredDistance = dx*dx + dy*dy;
+                if (testAngle && FieldOfView.isHidden(-(velX*dx + velY*dy), minDot, squaredDistance)) continue;
+                float dist = Math.max((float) Math.sqrt(squaredDistance), MIN_DISTANCE);
+                if (dist < alignmentDistance) {
+                    alignmentNeighbors++;
+                    alignmentX += svx[k];
+                    alignmentY += svy[k];
+                }
+                if (dist < cohesionDistance) {
+                    cohesionNeighbors++;
+                    cohesionX += ox;
+                    cohesionY += oy;
+                }
+                if (dist < separationDistance) {
+                    separationNeighbors++;
+                    if (dx == 0 && dy == 0) coincident++;
+                    separationX += dx / (dist*dist);
+                    separationY += dy / (dist*dist);
+                }
+            }
+        }
+
+        alignmentX += alignmentXs.reduceLanes(VectorOperators.ADD);
+        alignmentY += alignmentYs.reduceLanes(VectorOperators.ADD);
+        cohesionX += cohesionXs.reduceLanes(VectorOperators.ADD);
+        cohesionY += cohesionYs.reduceLanes(VectorOperators.ADD);
+        separationX += separationXs.reduceLanes(VectorOperators.ADD);
+        separationY += separationYs.reduceLanes(VectorOperators.ADD);
+
+        // Remove the Boid itself, which was counted as a neighbor at minimum distance.
+        // It is always in its own field of view as its distance is zero.
+        if (MIN_DISTANCE < alignmentDistance) {
+            alignmentNeighbors--;
+            alignmentX -= velX;
+            alignmentY -= velY;
+        }
+        if (MIN_DISTANCE < cohesionDistance) {
+            cohesionNeighbors--;
+            cohesionX -= x;
+            cohesionY -= y;
+        }
+        if (MIN_DISTANCE < separationDistance) {
+            separationNeighbors--;
+            coincident--;
+        }
+
+        // Other Boids at exactly the same location push to a random direction
+        for (int n = 0; n < coincident; n++) {
+            long counter = offsetCounter + 4L * n;
+            separationX += random.nextOffset(offsetStream, counter) / (MIN_DISTANCE * MIN_DISTANCE);
+            separationY += random.nextOffset(offsetStream, counter + 2) / (MIN_DISTANCE * MIN_DISTANCE);
+        }
+
+        sums.alignmentNeighbors = alignmentNeighbors;
+        sums.cohesionNeighbors = cohesionNeighbors;
+        sums.separationNeighbors = separationNeighbors;
+        sums.alignmentX = alignmentX;
+        sums.alignmentY = alignmentY;
+        sums.cohesionX = cohesionX;
+        sums.cohesionY = cohesionY;
+        sums.separationX = separationX;
+        sums.separationY = separationY;
+    }
+
+    /** Lane version of PeriodicBoundary.image */
+    private static FloatVector image(FloatVector others, FloatVector positions, float size) {
+        FloatVector offset = positions.sub(others);
+        return others.add(size, offset.compare(VectorOperators.GT, size / 2))
+                .sub(size, offset.compare(VectorOperators.LT, -size / 2));
+    }
+}
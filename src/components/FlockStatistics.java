@@ -0,0 +1,96 @@
+package components;
+
+/** Flock-level measures of the state of the Boids, for comparing runs
+ *  whose single Boids cannot be compared. */
+public final class FlockStatistics {
+
+    /** Connected groups of Boids, see clusters
+     *
+     * @param count number of clusters
+     * @param largest number of Boids in the largest cluster, 0 if there are none
+     */
+    public record Clusters(int count, int largest) {}
+
+    private FlockStatistics() {}
+
+    /** Returns the length of the mean heading of the Boids: 1 when all
+     *  Boids fly the same way and close to 0 when their headings are random.
+     *  Boids that stand still have no heading and count as 0. */
+    public static double polarization(BoidStore boids) {
+        double headingX = 0, headingY = 0;
+        for (int i = 0; i < boids.size(); i++) {
+            double speed = Math.sqrt(boids.vx[i]*boids.vx[i] + boids.vy[i]*boids.vy[i]);
+            if (speed > 0) {
+                headingX += boids.vx[i] / speed;
+                headingY += boids.vy[i] / speed;
+            }
+        }
+        return boids.size() == 0 ? 0 : Math.sqrt(headingX*headingX + headingY*headingY) / boids.size();
+    }
+
+    /** Finds the clusters of the Boids. Boids closer than the given
+     *  distance are linked, and a cluster is a group of at least two
+     *  Boids that are linked directly or through other Boids of the group.
+     *
+     * @param boids Boids to group
+     * @param grid grid to use for the search, which is rebuilt
+     * @param width width of the world
+     * @param height height of the world
+     * @param distance largest distance of linked Boids
+     * @param toroidal true to link Boids across the edges of the world
+     * @return the number of clusters and the size of the largest one
+     */
+    public static Clusters clusters(BoidStore boids, SpatialGrid grid, double width, double height, double distance, boolean toroidal) {
+        final int count = boids.size();
+        final double squaredDistance = distance * distance;
+        grid.rebuild(boids, width, height, distance, false, toroidal);
+        final double[] sx = grid.sortedX, sy = grid.sortedY;
+
+        // Union-find over grid entries, each root is the smallest entry of its set
+        int[] parent = new int[count];
+        for (int k = 0; k < count; k++) parent[k] = k;
+        for (int entry = 0; entry < count; entry++) {
+            int column = grid.columnOf(sx[entry]);
+            int row = grid.rowOf(sy[entry]);
+            for (int r = grid.firstNeighborRow(row); r <= grid.lastNeighborRow(row); r++) {
+                for (int c = grid.firstNeighborColumn(column); c <= grid.lastNeighborColumn(column); c++) {
+                    int cell = grid.wrapRow(r) * grid.getColumns() + grid.wrapColumn(c);
+                    int end = grid.cellEnd(cell);
+                    // Each pair is linked from its smaller entry
+                    for (int k = Math.max(grid.cellStart(cell), entry + 1); k < end; k++) {
+                        double dx = sx[entry] - (toroidal ? PeriodicBoundary.image(sx[k], sx[entry], grid.getWidth()) : sx[k]);
+                        double dy = sy[entry] - (toroidal ? PeriodicBoundary.image(sy[k], sy[entry], grid.getHeight()) : sy[k]);
+                        if (dx*dx + dy*dy < squaredDistance) union(parent, entry, k);
+                    }
+                }
+            }
+        }
+
+        int[] sizes = new int[count];
+        for (int k = 0; k < count; k++) sizes[find(parent, k)]++;
+        int clusters = 0;
+        int largest = 0;
+        for (int size : sizes) {
+            if (size < 2) continue;
+            clusters++;
+            largest = Math.max(largest, size);
+        }
+        return new Clusters(clusters, largest);
+    }
+
+    /** Returns the root of the set of k, halving the path to it */
+    private static int find(int[] parent, int k) {
+        while (parent[k] != k) {
+            parent[k] = parent[parent[k]];
+            k = parent[k];
+        }
+        return k;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA < rootB) parent[rootB] = rootA;
+        else if (rootB < rootA) parent[rootA] = rootB;
+    }
+}
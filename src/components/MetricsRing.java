@@ -0,0 +1,34 @@
+package components;
+
+/** A fixed size ring of the most recent samples of one metric.
+ *
+ *  The ring has a single writer. Readers on other threads may see a
+ *  sample being overwritten while they copy the ring, which only
+ *  affects statistics and is not worth a lock on the writing side.
+ */
+final class MetricsRing {
+    private final double[] samples;
+    private volatile long written = 0;
+
+    MetricsRing(int capacity) { samples = new double[Math.max(capacity, 1)]; }
+
+    /** Adds a sample, replacing the oldest one when the ring is full */
+    void add(double sample) {
+        long n = written;
+        samples[(int) (n % samples.length)] = sample;
+        written = n + 1;
+    }
+
+    /** Copies the samples in the ring to the given array
+     *
+     * @param out array of at least capacity() elements
+     * @return number of copied samples
+     */
+    int copyTo(double[] out) {
+        int count = (int) Math.min(written, samples.length);
+        System.arraycopy(samples, 0, out, 0, count);
+        return count;
+    }
+
+    int capacity() { return samples.length; }
+}
@@ -0,0 +1,126 @@
+package components;
+
+import java.util.Arrays;
+
+/** Orders Boids along a Z-order (Morton) curve of their positions.
+ *
+ *  The world is divided into 2048 x 2048 square cells, and the code of a
+ *  Boid interleaves the bits of its cell column and row. Boids that are
+ *  close in the world are then mostly close in the order, so storing the
+ *  Boids in this order keeps the neighbors of a Boid close in memory.
+ *
+ *  The 22 bit codes are sorted with a least significant digit radix sort
+ *  in two passes of 11 bits. For large counts each pass runs on chunks of
+ *  the Boids in parallel: every chunk counts its digits, and the counts
+ *  give each chunk its own range of every bucket to scatter into. The
+ *  sort is stable, so the order does not depend on the number of chunks.
+ */
+final class MortonOrder {
+    private static final int COORDINATE_BITS = 11;
+    private static final int RADIX_BITS = 11;
+    private static final int BUCKETS = 1 << RADIX_BITS;
+    // Smaller chunks are not worth a task of their own
+    private static final int MIN_CHUNK_SIZE = 16384;
+
+    private int[] codes = new int[0];
+    private int[] sortedCodes = new int[0];
+    private int[] order = new int[0];
+    private int[] sortedOrder = new int[0];
+    private int[] offsets = new int[0];
+
+    /** Returns the order of the Boids along the curve: entry k is the
+     *  index of the k-th Boid. The array is reused by the next call.
+     *
+     * @param store Boids to order
+     * @param width width of the world
+     * @param height height of the world
+     * @param executor executor of the parallel work
+     * @param parallel true to sort in parallel
+     * @return the order, of which the first store.size() entries are used
+     */
+    int[] sort(BoidStore store, double width, double height, SimulationExecutor executor, boolean parallel) {
+        final int count = store.size();
+        if (codes.length < count) {
+            codes = new int[count];
+            sortedCodes = new int[count];
+            order = new int[count];
+            sortedOrder = new int[count];
+        }
+        final int[] codes = this.codes;
+        final double[] px = store.px, py = store.py;
+        final double scale = (1 << COORDINATE_BITS) / Math.max(Math.max(width, height), 1);
+        executor.forEachRange(count, parallel, (from, to, sums) -> {
+            for (int i = from; i < to; i++) codes[i] = code(px[i] * scale, py[i] * scale);
+        });
+
+        int chunks = parallel ? Math.max(Math.min(count / MIN_CHUNK_SIZE, 4 * executor.getThreads()), 1) : 1;
+        if (offsets.length < chunks * BUCKETS) offsets = new int[chunks * BUCKETS];
+        // The first pass starts from the store order, which is not stored
+        sortPass(codes, null, sortedCodes, sortedOrder, 0, count, chunks, executor, parallel);
+        sortPass(sortedCodes, sortedOrder, codes, order, RADIX_BITS, count, chunks, executor, parallel);
+        return order;
+    }
+
+    /** Sorts the keys and values stably by the digit at the given shift
+     *
+     * @param keys codes to sort
+     * @param values Boid indices of the codes, or null for 0 .. count-1
+     * @param sortedKeys array for the sorted codes
+     * @param sortedValues array for the sorted Boid indices
+     * @param shift position of the lowest bit of the digit
+     * @param count number of codes
+     * @param chunks number of chunks the codes are split into
+     * @param executor executor of the chunks
+     * @param parallel true to handle the chunks in parallel
+     */
+    private void sortPass(int[] keys, int[] values, int[] sortedKeys, int[] sortedValues, int shift, int count, int chunks,
+                          SimulationExecutor executor, boolean parallel) {
+        final int[] offsets = this.offsets;
+        final int chunkSize = (count + chunks - 1) / chunks;
+        Arrays.fill(offsets, 0, chunks * BUCKETS, 0);
+        executor.forEachRange(chunks, 1, parallel, (from, to, sums) -> {
+            for (int chunk = from; chunk < to; chunk++) {
+                int base = chunk * BUCKETS;
+                int end = Math.min((chunk + 1) * chunkSize, count);
+                for (int i = chunk * chunkSize; i < end; i++) offsets[base + ((keys[i] >>> shift) & (BUCKETS - 1))]++;
+            }
+        });
+
+        // Buckets in digit order, and the chunks in their order within a bucket
+        int next = 0;
+        for (int digit = 0; digit < BUCKETS; digit++) {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int n = offsets[chunk * BUCKETS + digit];
+                offsets[chunk * BUCKETS + digit] = next;
+                next += n;
+            }
+        }
+
+        executor.forEachRange(chunks, 1, parallel, (from, to, sums) -> {
+            for (int chunk = from; chunk < to; chunk++) {
+                int base = chunk * BUCKETS;
+                int end = Math.min((chunk + 1) * chunkSize, count);
+                for (int i = chunk * chunkSize; i < end; i++) {
+                    int slot = offsets[base + ((keys[i] >>> shift) & (BUCKETS - 1))]++;
+                    sortedKeys[slot] = keys[i];
+                    sortedValues[slot] = values == null ? i : values[i];
+                }
+            }
+        });
+    }
+
+    /** Returns the Morton code of the cell at the given scaled coordinates */
+    private static int code(double x, double y) {
+        int max = (1 << COORDINATE_BITS) - 1;
+        return spread(Math.min(Math.max((int) x, 0), max)) | spread(Math.min(Math.max((int) y, 0), max)) << 1;
+    }
+
+    /** Moves bit k of the given 16 bit value to bit 2k */
+    private static int spread(int v) {
+        v = (v | (v << 8)) & 0x00FF00FF;
+        v = (v | (v << 4)) & 0x0F0F0F0F;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+}
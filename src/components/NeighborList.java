@@ -0,0 +1,159 @@
+package components;
+
+import java.util.Arrays;
+
+/** Verlet neighbor lists, which are kept over several steps.
+ *
+ *  The list of a Boid holds every other Boid closer than the interaction
+ *  radius plus a skin. As long as no Boid has moved more than half of the
+ *  skin since the lists were built, every Boid within the radius is still
+ *  on the list, so the lists are only rebuilt when some Boid has moved
+ *  that far, or when the Boids or the radius have changed.
+ *
+ *  The lists are stored in one array: the neighbors of Boid i are entries
+ *  start(i) .. end(i)-1. Each list is sorted by store index, so a loop
+ *  over a list sees the neighbors in the same order as a loop over the
+ *  whole store, and sums the same values in the same order.
+ *
+ *  The lists are built with their own SpatialGrid, which also gives the
+ *  Boids in cell order for walking them tile by tile.
+ */
+public class NeighborList {
+    private final SpatialGrid grid = new SpatialGrid();
+    private int[] start = new int[1];
+    private int[] neighbors = new int[0];
+    private double[] referenceX = new double[0];
+    private double[] referenceY = new double[0];
+    // Parameters of the last build, any change of them needs a rebuild
+    private int count = -1;
+    private long changeCount = -1;
+    private double radius = -1;
+    private double skin = -1;
+    private double width = -1;
+    private double height = -1;
+    private boolean toroidal = false;
+    private long builds = 0;
+
+    /** Rebuilds the lists if they may be missing a neighbor within the
+     *  given radius
+     *
+     * @param store Boids of the lists
+     * @param width width of the world
+     * @param height height of the world
+     * @param radius the largest interaction distance
+     * @param skin extra distance of the lists, at least 0
+     * @param toroidal true if the world wraps around at its edges
+     * @param executor executor of the build
+     * @param parallel true to build in parallel
+     * @return true if the lists were rebuilt
+     */
+    public boolean update(BoidStore store, double width, double height, double radius, double skin, boolean toroidal,
+                          SimulationExecutor executor, boolean parallel) {
+        skin = Math.max(skin, 0);
+        if (store.size() == count && store.getChangeCount() == changeCount && radius == this.radius && skin == this.skin
+                && width == this.width && height == this.height && toroidal == this.toroidal
+                && 4 * maxSquaredDisplacement(store) < skin * skin) {
+            return false;
+        }
+        build(store, width, height, radius, skin, toroidal, executor, parallel);
+        return true;
+    }
+
+    /** Returns the square of the largest distance a Boid has moved since the last build */
+    private double maxSquaredDisplacement(BoidStore store) {
+        final double[] px = store.px, py = store.py;
+        double max = 0;
+        for (int i = 0; i < count; i++) {
+            // A Boid that wrapped around an edge has moved to the nearest image
+            double dx = (toroidal ? PeriodicBoundary.image(px[i], referenceX[i], width) : px[i]) - referenceX[i];
+            double dy = (toroidal ? PeriodicBoundary.image(py[i], referenceY[i], height) : py[i]) - referenceY[i];
+            max = Math.max(max, dx*dx + dy*dy);
+        }
+        return max;
+    }
+
+    private void build(BoidStore store, double width, double height, double radius, double skin, boolean toroidal,
+                       SimulationExecutor executor, boolean parallel) {
+        final int count = store.size();
+        final double listRadius = radius + skin;
+        final double squaredListRadius = listRadius * listRadius;
+        final SpatialGrid grid = this.grid;
+        grid.rebuild(store, width, height, listRadius, false, toroidal);
+        final double[] sx = grid.sortedX, sy = grid.sortedY;
+        final double gridWidth = grid.getWidth(), gridHeight = grid.getHeight();
+        if (start.length < count + 1) start = new int[count + 1];
+        final int[] start = this.start;
+
+        // The first pass counts the neighbors of each Boid, the second pass
+        // writes them at the offsets given by the counts
+        for (int pass = 0; pass < 2; pass++) {
+            final boolean fill = pass == 1;
+            final int[] neighbors = this.neighbors;
+            executor.forEachTile(grid, parallel, (from, to, sums) -> {
+                for (int entry = from; entry < to; entry++) {
+                    final int i = grid.entry(entry);
+                    final double x = sx[entry], y = sy[entry];
+                    int next = fill ? start[i] : 0;
+                    int column = grid.columnOf(x);
+                    int row = grid.rowOf(y);
+                    int lastRow = grid.lastNeighborRow(row);
+                    int lastColumn = grid.lastNeighborColumn(column);
+                    for (int r = grid.firstNeighborRow(row); r <= lastRow; r++) {
+                        for (int c = grid.firstNeighborColumn(column); c <= lastColumn; c++) {
+                            int cell = grid.wrapRow(r) * grid.getColumns() + grid.wrapColumn(c);
+                            int end = grid.cellEnd(cell);
+                            for (int k = grid.cellStart(cell); k < end; k++) {
+                                if (k == entry) continue;
+                                double dx = x - (toroidal ? PeriodicBoundary.image(sx[k], x, gridWidth) : sx[k]);
+                                double dy = y - (toroidal ? PeriodicBoundary.image(sy[k], y, gridHeight) : sy[k]);
+                                if (dx*dx + dy*dy >= squaredListRadius) continue;
+                                if (fill) neighbors[next] = grid.entry(k);
+                                next++;
+                            }
+                        }
+                    }
+                    if (fill) Arrays.sort(neighbors, start[i], next);
+                    else start[i + 1] = next;
+                }
+            });
+            if (!fill) {
+                start[0] = 0;
+                for (int i = 0; i < count; i++) start[i + 1] += start[i];
+                if (this.neighbors.length < start[count]) this.neighbors = new int[start[count] + start[count] / 4];
+            }
+        }
+
+        if (referenceX.length < count) {
+            referenceX = new double[count];
+            referenceY = new double[count];
+        }
+        System.arraycopy(store.px, 0, referenceX, 0, count);
+        System.arraycopy(store.py, 0, referenceY, 0, count);
+        this.count = count;
+        this.changeCount = store.getChangeCount();
+        this.radius = radius;
+        this.skin = skin;
+        this.width = width;
+        this.height = height;
+        this.toroidal = toroidal;
+        builds++;
+    }
+
+    /** Returns the index of the first neighbor entry of Boid i */
+    public int start(int i) { return start[i]; }
+
+    /** Returns the index after the last neighbor entry of Boid i */
+    public int end(int i) { return start[i + 1]; }
+
+    /** Returns the Boid index stored in the given neighbor entry */
+    public int neighbor(int entry) { return neighbors[entry]; }
+
+    /** Returns the grid of the last build, for walking the Boids in cell order */
+    public SpatialGrid getGrid() { return grid; }
+
+    /** Returns the number of builds so far */
+    public long getBuildCount() { return builds; }
+
+    /** Returns the total length of the lists */
+    public int size() { return count < 0 ? 0 : start[count]; }
+}
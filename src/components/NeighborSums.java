@@ -0,0 +1,15 @@
+package components;
+
+/** Neighbor counts and sums of one Boid, filled by a neighbor kernel */
+class NeighborSums {
+    int alignmentNeighbors;
+    int cohesionNeighbors;
+    int separationNeighbors;
+    double alignmentX, alignmentY;
+    double cohesionX, cohesionY;
+    double separationX, separationY;
+    // Traversal stack of Quadtree.sumNeighbors, allocated on first use
+    int[] nodeStack;
+    // Candidate ranges of the grid kernels, allocated on first use
+    BlockRanges ranges;
+}
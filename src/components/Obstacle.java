@@ -0,0 +1,16 @@
+package components;
+
+/** A static obstacle that Boids steer away from, see ObstacleField */
+public interface Obstacle {
+
+    /** Returns the distance from the given point to the edge of the
+     *  obstacle, negative inside the obstacle */
+    double signedDistance(double x, double y);
+
+    /* Bounding box of the obstacle */
+
+    double getMinX();
+    double getMinY();
+    double getMaxX();
+    double getMaxY();
+}
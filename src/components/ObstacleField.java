@@ -0,0 +1,151 @@
+package components;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** A precomputed force field that pushes Boids away from the borders of
+ *  the world and from static obstacles.
+ *
+ *  The field samples the signed distance to the nearest obstacle on a
+ *  regular grid of points SPACING pixels apart and stores the resulting
+ *  avoidance force at every point, together with the border force. A Boid
+ *  reads its force with one bilinear lookup, so the cost per Boid does not
+ *  depend on the number of obstacles.
+ *
+ *  The field is rebuilt only when the size of the world or the list of
+ *  obstacles changes. Each obstacle is evaluated only on the points within
+ *  INFLUENCE pixels of its bounding box, where its force is not negligible.
+ */
+public class ObstacleField {
+    /** Distance between grid points in pixels */
+    public static final double SPACING = 2;
+    /** Distance from an obstacle beyond which it exerts no force */
+    public static final double INFLUENCE = 100;
+    /** Force at distance d is STRENGTH / d^2, as for the borders */
+    private static final double STRENGTH = 100;
+    /** Distances are clamped to this, so forces stay finite at the edges */
+    private static final double MIN_DISTANCE = 1;
+
+    private int columns = 0;
+    private int rows = 0;
+    private float[] distance = new float[0];
+    private float[] forceX = new float[0];
+    private float[] forceY = new float[0];
+    private double width = Double.NaN;
+    private double height = Double.NaN;
+    private List<Obstacle> obstacles = null;
+    private boolean borders = true;
+
+    /** Rebuilds the field if the size of the world, the obstacle list or
+     *  the border setting has changed since the last build
+     *
+     * @param width width of the world
+     * @param height height of the world
+     * @param obstacles obstacles to avoid, compared by identity
+     * @param borders true to include the border force
+     * @return true if the field was rebuilt
+     */
+    public boolean update(double width, double height, List<Obstacle> obstacles, boolean borders) {
+        if (width == this.width && height == this.height && obstacles == this.obstacles && borders == this.borders) return false;
+        rebuild(width, height, obstacles, borders);
+        return true;
+    }
+
+    /** Rebuilds the field
+     *
+     * @param width width of the world
+     * @param height height of the world
+     * @param obstacles obstacles to avoid
+     * @param borders true to include the border force, false for a toroidal world
+     */
+    public void rebuild(double width, double height, List<Obstacle> obstacles, boolean borders) {
+        this.width = width;
+        this.height = height;
+        this.obstacles = obstacles;
+        this.borders = borders;
+        columns = (int) Math.ceil(Math.max(width, 1) / SPACING) + 1;
+        rows = (int) Math.ceil(Math.max(height, 1) / SPACING) + 1;
+        int points = columns * rows;
+        if (distance.length < points) {
+            distance = new float[points];
+            forceX = new float[points];
+            forceY = new float[points];
+        }
+        Arrays.fill(distance, 0, points, Float.POSITIVE_INFINITY);
+
+        for (Obstacle obstacle : obstacles) {
+            int c0 = clamp((int) Math.floor((obstacle.getMinX() - INFLUENCE) / SPACING), columns);
+            int c1 = clamp((int) Math.ceil((obstacle.getMaxX() + INFLUENCE) / SPACING), columns);
+            int r0 = clamp((int) Math.floor((obstacle.getMinY() - INFLUENCE) / SPACING), rows);
+            int r1 = clamp((int) Math.ceil((obstacle.getMaxY() + INFLUENCE) / SPACING), rows);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int p = r * columns + c;
+                    distance[p] = Math.min(distance[p], (float) obstacle.signedDistance(c * SPACING, r * SPACING));
+                }
+            }
+        }
+
+        for (int r = 0; r < rows; r++) {
+            double y = r * SPACING;
+            double bfY = !borders ? 0 : y < height/2 ? border(y) : -border(height - y);
+            for (int c = 0; c < columns; c++) {
+                double x = c * SPACING;
+                int p = r * columns + c;
+                double fx = !borders ? 0 : x < width/2 ? border(x) : -border(width - x);
+                double fy = bfY;
+
+                // Obstacle force along the gradient of the distance, which is
+                // taken with central differences (one-sided at the grid edges)
+                double d = distance[p];
+                if (d < INFLUENCE) {
+                    double gx = distance[Math.min(c + 1, columns - 1) + r * columns] - distance[Math.max(c - 1, 0) + r * columns];
+                    double gy = distance[c + Math.min(r + 1, rows - 1) * columns] - distance[c + Math.max(r - 1, 0) * columns];
+                    double length = Math.sqrt(gx*gx + gy*gy);
+                    if (length > 0 && !Double.isInfinite(length)) {
+                        double magnitude = border(Math.max(d, 0));
+                        fx += gx / length * magnitude;
+                        fy += gy / length * magnitude;
+                    }
+                }
+                forceX[p] = (float) fx;
+                forceY[p] = (float) fy;
+            }
+        }
+    }
+
+    /** Returns the x component of the force at the given location */
+    public double forceXAt(double x, double y) {
+        return sample(forceX, x, y);
+    }
+
+    /** Returns the y component of the force at the given location */
+    public double forceYAt(double x, double y) {
+        return sample(forceY, x, y);
+    }
+
+    private double sample(float[] values, double x, double y) {
+        double gx = Math.min(Math.max(x / SPACING, 0), columns - 1);
+        double gy = Math.min(Math.max(y / SPACING, 0), rows - 1);
+        int c = Math.min((int) gx, columns - 2);
+        int r = Math.min((int) gy, rows - 2);
+        double tx = gx - c;
+        double ty = gy - r;
+        int p = r * columns + c;
+        double top = values[p] + (values[p + 1] - values[p]) * tx;
+        double bottom = values[p + columns] + (values[p + columns + 1] - values[p + columns]) * tx;
+        return top + (bottom - top) * ty;
+    }
+
+    private static double border(double distance) {
+        double d = Math.max(distance, MIN_DISTANCE);
+        return STRENGTH / (d*d);
+    }
+
+    private static int clamp(int index, int count) {
+        return Math.min(Math.max(index, 0), count - 1);
+    }
+
+    public int getColumns() { return columns; }
+    public int getRows() { return rows; }
+}
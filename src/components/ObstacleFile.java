@@ -0,0 +1,57 @@
+package components;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Reads obstacles from a text file.
+ *
+ *  Each line describes one obstacle, in pixels of the world:
+ *  <pre>
+ *  circle X Y RADIUS
+ *  polygon X1 Y1 X2 Y2 X3 Y3 ...
+ *  </pre>
+ *  Empty lines and lines starting with '#' are ignored.
+ */
+public final class ObstacleFile {
+
+    private ObstacleFile() {}
+
+    /** Reads the obstacles of the given file
+     *
+     * @param path file to read
+     * @return the obstacles in file order
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public static List<Obstacle> load(Path path) throws IOException {
+        List<Obstacle> obstacles = new ArrayList<>();
+        List<String> lines = Files.readAllLines(path);
+        for (int n = 0; n < lines.size(); n++) {
+            String line = lines.get(n).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] words = line.split("\\s+");
+            try {
+                double[] numbers = new double[words.length - 1];
+                for (int i = 1; i < words.length; i++) numbers[i - 1] = Double.parseDouble(words[i]);
+                if (words[0].equals("circle") && numbers.length == 3) {
+                    obstacles.add(new CircleObstacle(numbers[0], numbers[1], numbers[2]));
+                }
+                else if (words[0].equals("polygon") && numbers.length >= 6 && numbers.length % 2 == 0) {
+                    double[] xs = new double[numbers.length / 2];
+                    double[] ys = new double[numbers.length / 2];
+                    for (int i = 0; i < xs.length; i++) {
+                        xs[i] = numbers[2*i];
+                        ys[i] = numbers[2*i + 1];
+                    }
+                    obstacles.add(new PolygonObstacle(xs, ys));
+                }
+                else throw new IllegalArgumentException("Unknown obstacle");
+            } catch (IllegalArgumentException e) {
+                throw new IOException(path + ":" + (n + 1) + ": cannot read obstacle '" + line + "'", e);
+            }
+        }
+        return obstacles;
+    }
+}
@@ -0,0 +1,34 @@
+package components;
+
+/** Minimum image convention of a toroidal world.
+ *
+ *  A Boid at x is also at x + k * width for every integer k. Of these
+ *  images, a Boid interacts with the one of the other Boid nearest to it.
+ *  Coordinates are inside the world, so at most one shift is needed.
+ */
+final class PeriodicBoundary {
+
+    private PeriodicBoundary() {}
+
+    /** Returns the coordinate of the image of a Boid nearest to a position
+     *
+     * @param other coordinate of the other Boid
+     * @param position coordinate of the Boid that looks for neighbors
+     * @param size width or height of the world
+     * @return other, shifted by size if that brings it closer to position
+     */
+    static double image(double other, double position, double size) {
+        double offset = position - other;
+        if (offset > size / 2) return other + size;
+        if (offset < -size / 2) return other - size;
+        return other;
+    }
+
+    /** Single precision version of image, for the float kernels */
+    static float image(float other, float position, float size) {
+        float offset = position - other;
+        if (offset > size / 2) return other + size;
+        if (offset < -size / 2) return other - size;
+        return other;
+    }
+}
@@ -0,0 +1,63 @@
+package components;
+
+/** A polygonal obstacle. The polygon may be concave but should not
+ *  intersect itself. */
+public class PolygonObstacle implements Obstacle {
+    private final double[] xs;
+    private final double[] ys;
+    private double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+    /** Creates a polygonal obstacle from its corners in order
+     *
+     * @param xs x coordinates of the corners
+     * @param ys y coordinates of the corners
+     */
+    public PolygonObstacle(double[] xs, double[] ys) {
+        if (xs.length != ys.length || xs.length < 3) {
+            throw new IllegalArgumentException("A polygon needs at least 3 corners with both coordinates");
+        }
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        for (int i = 0; i < xs.length; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+    }
+
+    /** Returns the distance to the nearest edge, negative if the point
+     *  is inside by the even-odd rule */
+    @Override
+    public double signedDistance(double x, double y) {
+        double squaredDistance = Double.POSITIVE_INFINITY;
+        boolean inside = false;
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+            double ex = xs[i] - xs[j], ey = ys[i] - ys[j];
+            double wx = x - xs[j], wy = y - ys[j];
+            double squaredLength = ex*ex + ey*ey;
+            double t = squaredLength == 0 ? 0 : Math.min(Math.max((wx*ex + wy*ey) / squaredLength, 0), 1);
+            double dx = wx - t*ex, dy = wy - t*ey;
+            squaredDistance = Math.min(squaredDistance, dx*dx + dy*dy);
+            if ((ys[i] > y) != (ys[j] > y) && x < xs[j] + (y - ys[j]) * ex / ey) inside = !inside;
+        }
+        double distance = Math.sqrt(squaredDistance);
+        return inside ? -distance : distance;
+    }
+
+    @Override public double getMinX() { return minX; }
+    @Override public double getMinY() { return minY; }
+    @Override public double getMaxX() { return maxX; }
+    @Override public double getMaxY() { return maxY; }
+
+    /** Returns the corners as x, y pairs */
+    public double[] getPoints() {
+        double[] points = new double[2 * xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            points[2*i] = xs[i];
+            points[2*i + 1] = ys[i];
+        }
+        return points;
+    }
+}
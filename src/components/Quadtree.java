@@ -0,0 +1,307 @@
+package components;
+
+import java.util.Arrays;
+
+/** A quadtree over the Boids for approximate alignment and cohesion,
+ *  in the style of the Barnes-Hut algorithm.
+ *
+ *  Every node stores the number of Boids below it and the sums of their
+ *  positions and velocities. A node that is completely inside a radius
+ *  and completely in the field of view is used as a whole, which is
+ *  exact. A node that crosses a radius or the edge of the field of view
+ *  is small if its size is below the opening angle times the distance
+ *  to its center of mass. A small node is also used as a whole, with all
+ *  of its Boids at the center of mass, so it is seen and within a radius
+ *  if the center of mass is. Other nodes, and nodes that contain the
+ *  Boid, are opened, and the Boids of leaves are compared one by one.
+ *  An opening angle of 0 gives the exact result.
+ *
+ *  The tree is stored in flat arrays and rebuilt every step. Like in
+ *  SpatialGrid, the Boids are also copied in tree order, so the Boids
+ *  of a leaf are next to each other in memory.
+ */
+public class Quadtree {
+    /** Largest number of Boids in a leaf, unless the leaf is at MAX_DEPTH */
+    public static final int LEAF_SIZE = 8;
+    /** Depth at which nodes are no longer split, e.g. for Boids at the same location */
+    public static final int MAX_DEPTH = 32;
+    /** Size of the traversal stack, see sumNeighbors */
+    static final int STACK_SIZE = 3 * MAX_DEPTH + 4;
+
+    private int nodeCount = 0;
+    // Square bounds of each node: center and half of the side
+    private double[] centerX = new double[0];
+    private double[] centerY = new double[0];
+    private double[] half = new double[0];
+    // Index of the first of the four children, or -1 for leaves
+    private int[] firstChild = new int[0];
+    // Entries first .. last-1 of 'order' are the Boids of the node
+    private int[] first = new int[0];
+    private int[] last = new int[0];
+    private double[] sumX = new double[0];
+    private double[] sumY = new double[0];
+    private double[] sumVx = new double[0];
+    private double[] sumVy = new double[0];
+
+    private int[] order = new int[0];
+    double[] sortedX = new double[0];
+    double[] sortedY = new double[0];
+    double[] sortedVx = new double[0];
+    double[] sortedVy = new double[0];
+
+
+    /* Private methods */
+
+    private int addNode(double cx, double cy, double h, int from, int to) {
+        if (nodeCount == centerX.length) {
+            int capacity = Math.max(16, 2 * nodeCount);
+            centerX = Arrays.copyOf(centerX, capacity);
+            centerY = Arrays.copyOf(centerY, capacity);
+            half = Arrays.copyOf(half, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            first = Arrays.copyOf(first, capacity);
+            last = Arrays.copyOf(last, capacity);
+            sumX = Arrays.copyOf(sumX, capacity);
+            sumY = Arrays.copyOf(sumY, capacity);
+            sumVx = Arrays.copyOf(sumVx, capacity);
+            sumVy = Arrays.copyOf(sumVy, capacity);
+        }
+        int node = nodeCount++;
+        centerX[node] = cx;
+        centerY[node] = cy;
+        half[node] = h;
+        firstChild[node] = -1;
+        first[node] = from;
+        last[node] = to;
+        return node;
+    }
+
+    /** Moves the entries from .. to-1 of 'order' for which the coordinate
+     *  is below the split to the front and returns the first other entry */
+    private int partition(double[] coordinates, double split, int from, int to) {
+        int i = from, j = to - 1;
+        while (i <= j) {
+            if (coordinates[order[i]] < split) i++;
+            else {
+                int swap = order[i];
+                order[i] = order[j];
+                order[j--] = swap;
+            }
+        }
+        return i;
+    }
+
+    /** Splits the node until its leaves have at most LEAF_SIZE Boids
+     *  and sums the Boids of every node */
+    private void build(BoidStore store, int node, int depth) {
+        int from = first[node], to = last[node];
+        if (to - from <= LEAF_SIZE || depth == MAX_DEPTH) {
+            double x = 0, y = 0, velX = 0, velY = 0;
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                x += store.px[i];
+                y += store.py[i];
+                velX += store.vx[i];
+                velY += store.vy[i];
+            }
+            sumX[node] = x;
+            sumY[node] = y;
+            sumVx[node] = velX;
+            sumVy[node] = velY;
+            return;
+        }
+
+        // Children are top left, top right, bottom left and bottom right
+        double cx = centerX[node], cy = centerY[node], h = half[node] / 2;
+        int middle = partition(store.py, cy, from, to);
+        int topMiddle = partition(store.px, cx, from, middle);
+        int bottomMiddle = partition(store.px, cx, middle, to);
+        int child = addNode(cx - h, cy - h, h, from, topMiddle);
+        addNode(cx + h, cy - h, h, topMiddle, middle);
+        addNode(cx - h, cy + h, h, middle, bottomMiddle);
+        addNode(cx + h, cy + h, h, bottomMiddle, to);
+        firstChild[node] = child;
+
+        double x = 0, y = 0, velX = 0, velY = 0;
+        for (int c = child; c < child + 4; c++) {
+            build(store, c, depth + 1);
+            x += sumX[c];
+            y += sumY[c];
+            velX += sumVx[c];
+            velY += sumVy[c];
+        }
+        sumX[node] = x;
+        sumY[node] = y;
+        sumVx[node] = velX;
+        sumVy[node] = velY;
+    }
+
+
+    /* Public methods */
+
+    /** Rebuilds the tree from the Boids of the given store
+     *
+     * @param store Boids to insert into the tree
+     */
+    public void rebuild(BoidStore store) {
+        int count = store.size();
+        if (order.length < count) {
+            order = new int[count];
+            sortedX = new double[count];
+            sortedY = new double[count];
+            sortedVx = new double[count];
+            sortedVy = new double[count];
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            minX = Math.min(minX, store.px[i]);
+            minY = Math.min(minY, store.py[i]);
+            maxX = Math.max(maxX, store.px[i]);
+            maxY = Math.max(maxY, store.py[i]);
+        }
+        nodeCount = 0;
+        if (count == 0) {
+            addNode(0, 0, 1, 0, 0);
+            return;
+        }
+        // Grown slightly so that Boids on the upper bounds are inside the root
+        double h = Math.max(Math.max(maxX - minX, maxY - minY) / 2, 1) * 1.0001;
+        int root = addNode((minX + maxX) / 2, (minY + maxY) / 2, h, 0, count);
+        build(store, root, 0);
+
+        for (int k = 0; k < count; k++) {
+            int i = order[k];
+            sortedX[k] = store.px[i];
+            sortedY[k] = store.py[i];
+            sortedVx[k] = store.vx[i];
+            sortedVy[k] = store.vy[i];
+        }
+    }
+
+    /** Sums the alignment and cohesion neighbors of a Boid into 'sums'.
+     *  Separation sums are not touched.
+     *
+     * @param boid index of the Boid in the store, which is not its own neighbor
+     * @param x x coordinate of the Boid
+     * @param y y coordinate of the Boid
+     * @param velX x component of the velocity of the Boid
+     * @param velY y component of the velocity of the Boid
+     * @param useFieldOfView true to skip neighbors outside the field of view
+     * @param cosHalfAngle cosine of half of the detection angle
+     * @param sinHalfAngle sine of half of the detection angle
+     * @param minDot cosine of half of the detection angle times speed, see FieldOfView
+     * @param alignmentDistance alignment radius
+     * @param cohesionDistance cohesion radius
+     * @param openingAngle nodes across a radius or the edge of the field of view that
+     *                     are smaller than this times their distance are used as a whole
+     * @param sums sums to fill
+     */
+    void sumNeighbors(int boid, double x, double y, double velX, double velY,
+                      boolean useFieldOfView, double cosHalfAngle, double sinHalfAngle, double minDot,
+                      double alignmentDistance, double cohesionDistance, double openingAngle,
+                      NeighborSums sums) {
+        final double[] sx = sortedX, sy = sortedY, svx = sortedVx, svy = sortedVy;
+        final double radius = Math.max(alignmentDistance, cohesionDistance);
+        final double squaredRadius = radius * radius;
+        final double squaredOpeningAngle = openingAngle * openingAngle;
+        final double squaredAlignmentDistance = alignmentDistance * alignmentDistance;
+        final double squaredCohesionDistance = cohesionDistance * cohesionDistance;
+        int alignmentNeighbors = 0;
+        int cohesionNeighbors = 0;
+        double alignmentX = 0, alignmentY = 0;
+        double cohesionX = 0, cohesionY = 0;
+
+        if (sums.nodeStack == null) sums.nodeStack = new int[STACK_SIZE];
+        final int[] stack = sums.nodeStack;
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            int from = first[node], to = last[node];
+            if (from == to) continue;
+
+            // Skip nodes whose bounds are beyond the radius
+            double h = half[node];
+            double offsetX = Math.abs(x - centerX[node]);
+            double offsetY = Math.abs(y - centerY[node]);
+            double gapX = Math.max(offsetX - h, 0);
+            double gapY = Math.max(offsetY - h, 0);
+            if (gapX*gapX + gapY*gapY >= squaredRadius) continue;
+
+            int child = firstChild[node];
+            if (child >= 0) {
+                int n = to - from;
+                double dx = x - sumX[node] / n;
+                double dy = y - sumY[node] / n;
+                double squaredDistance = dx*dx + dy*dy;
+                // The sums of a node are exact for a radius the node is completely
+                // inside of, if the node is also completely in the field of view
+                double squaredGap = gapX*gapX + gapY*gapY;
+                double farX = offsetX + h, farY = offsetY + h;
+                double squaredFar = farX*farX + farY*farY;
+                boolean exact = !((squaredGap < squaredAlignmentDistance && squaredFar >= squaredAlignmentDistance)
+                        || (squaredGap < squaredCohesionDistance && squaredFar >= squaredCohesionDistance));
+                if (exact && useFieldOfView) {
+                    double left = centerX[node] - h - x, top = centerY[node] - h - y;
+                    double right = left + 2*h, bottom = top + 2*h;
+                    if (FieldOfView.isBoxHidden(left, top, right, bottom, velX, velY, minDot)) continue;
+                    exact = FieldOfView.isBoxVisible(left, top, right, bottom, velX, velY, cosHalfAngle, sinHalfAngle);
+                }
+                // Other nodes are opened unless they are small compared to their distance,
+                // in which case all of their Boids are at the center of mass. Nodes that
+                // contain the Boid are always opened.
+                boolean containsBoid = offsetX <= h && offsetY <= h;
+                if (containsBoid || (!exact && 4*h*h >= squaredOpeningAngle * squaredDistance)) {
+                    stack[stackSize++] = child;
+                    stack[stackSize++] = child + 1;
+                    stack[stackSize++] = child + 2;
+                    stack[stackSize++] = child + 3;
+                    continue;
+                }
+                if (!exact && useFieldOfView && FieldOfView.isHidden(-(velX*dx + velY*dy), minDot, squaredDistance)) continue;
+                if (squaredFar < squaredAlignmentDistance || (!exact && squaredDistance < squaredAlignmentDistance)) {
+                    alignmentNeighbors += n;
+                    alignmentX += sumVx[node];
+                    alignmentY += sumVy[node];
+                }
+                if (squaredFar < squaredCohesionDistance || (!exact && squaredDistance < squaredCohesionDistance)) {
+                    cohesionNeighbors += n;
+                    cohesionX += sumX[node];
+                    cohesionY += sumY[node];
+                }
+                continue;
+            }
+
+            for (int k = from; k < to; k++) {
+                if (order[k] == boid) continue;
+                double dx = x - sx[k];
+                double dy = y - sy[k];
+                double squaredDistance = dx*dx + dy*dy;
+                if (squaredDistance >= squaredRadius) continue;
+                if (useFieldOfView && FieldOfView.isHidden(-(velX*dx + velY*dy), minDot, squaredDistance)) continue;
+                if (squaredDistance < squaredAlignmentDistance) {
+                    alignmentNeighbors++;
+                    alignmentX += svx[k];
+                    alignmentY += svy[k];
+                }
+                if (squaredDistance < squaredCohesionDistance) {
+                    cohesionNeighbors++;
+                    cohesionX += sx[k];
+                    cohesionY += sy[k];
+                }
+            }
+        }
+
+        sums.alignmentNeighbors = alignmentNeighbors;
+        sums.cohesionNeighbors = cohesionNeighbors;
+        sums.alignmentX = alignmentX;
+        sums.alignmentY = alignmentY;
+        sums.cohesionX = cohesionX;
+        sums.cohesionY = cohesionY;
+    }
+
+    /** Returns the number of nodes, including empty ones */
+    public int getNodeCount() { return nodeCount; }
+}
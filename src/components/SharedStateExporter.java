@@ -0,0 +1,128 @@
+package components;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Publishes the state of the Boids after every step into a memory-mapped
+ *  file, see SharedStateFormat, so that other processes on the same host
+ *  can read live frames with SharedStateReader without talking to the
+ *  simulation.
+ *
+ *  The simulation thread copies the arrays of the store straight into
+ *  the mapping with bulk copies through views that are made once, so
+ *  publishing does not allocate. Frames alternate between two slots,
+ *  each guarded by a seqlock, and the writer never waits for readers.
+ *
+ *  A file in a memory-backed file system such as /dev/shm is not written
+ *  to disk. Only the parts of the file used by the Boid count are touched.
+ *
+ *  Exporters are meant to be used from a single thread.
+ */
+public class SharedStateExporter implements AutoCloseable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int[] slotOffsets = new int[SharedStateFormat.SLOTS];
+    // Views of the blocks of each slot: x, y, vx and vy
+    private final DoubleBuffer[][] blocks = new DoubleBuffer[SharedStateFormat.SLOTS][4];
+    private long frames = 0;
+
+    /** Creates or replaces the given file with room for the given number of Boids
+     *
+     * @param path file to map
+     * @param capacity largest number of Boids in a frame, larger counts are cut
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public SharedStateExporter(Path path, int capacity) throws IOException {
+        this.capacity = Math.max(capacity, 1);
+        long bytes = SharedStateFormat.fileBytes(this.capacity);
+        if (bytes > Integer.MAX_VALUE) throw new IOException("Capacity " + capacity + " does not fit in a single mapping");
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.order(SharedStateFormat.ORDER);
+        int blockBytes = this.capacity * Double.BYTES;
+        for (int slot = 0; slot < SharedStateFormat.SLOTS; slot++) {
+            slotOffsets[slot] = (int) SharedStateFormat.slotOffset(slot, this.capacity);
+            for (int block = 0; block < 4; block++) {
+                int offset = slotOffsets[slot] + SharedStateFormat.SLOT_HEADER_BYTES + block * blockBytes;
+                blocks[slot][block] = buffer.slice(offset, blockBytes).order(SharedStateFormat.ORDER).asDoubleBuffer();
+            }
+        }
+
+        // The magic is written last, so a reader never sees a half-written header
+        buffer.putInt(4, SharedStateFormat.VERSION);
+        buffer.putInt(SharedStateFormat.CAPACITY, this.capacity);
+        buffer.putInt(SharedStateFormat.SLOT_COUNT, SharedStateFormat.SLOTS);
+        SharedStateFormat.LONGS.setRelease(buffer, SharedStateFormat.FRAMES, 0L);
+        VarHandle.storeStoreFence();
+        buffer.putInt(0, SharedStateFormat.MAGIC);
+    }
+
+    /** Publishes the current state of the given store as the newest frame
+     *
+     * @param store Boids to publish, of which the ones with the 'capacity' lowest ids are published
+     * @param step number of the simulation step
+     * @param width width of the world
+     * @param height height of the world
+     */
+    public void publish(BoidStore store, long step, double width, double height) {
+        int slot = (int) (frames % SharedStateFormat.SLOTS);
+        int base = slotOffsets[slot];
+        int n = Math.min(store.size(), capacity);
+
+        // Odd sequence: the slot is being written. The fence keeps the
+        // writes of the frame after it.
+        long sequence = (long) SharedStateFormat.LONGS.get(buffer, base + SharedStateFormat.SEQUENCE);
+        SharedStateFormat.LONGS.setVolatile(buffer, base + SharedStateFormat.SEQUENCE, sequence + 1);
+        VarHandle.storeStoreFence();
+
+        buffer.putLong(base + SharedStateFormat.STEP, step);
+        buffer.putInt(base + SharedStateFormat.COUNT, n);
+        buffer.putDouble(base + SharedStateFormat.WIDTH, width);
+        buffer.putDouble(base + SharedStateFormat.HEIGHT, height);
+        DoubleBuffer[] slotBlocks = blocks[slot];
+        if (store.isInIdOrder()) {
+            slotBlocks[0].put(0, store.px, 0, n);
+            slotBlocks[1].put(0, store.py, 0, n);
+            slotBlocks[2].put(0, store.vx, 0, n);
+            slotBlocks[3].put(0, store.vy, 0, n);
+        }
+        else {
+            // Boids are published in id order, so readers can follow a Boid by its index
+            for (int i = 0; i < store.size(); i++) {
+                int id = store.id[i];
+                if (id >= n) continue;
+                slotBlocks[0].put(id, store.px[i]);
+                slotBlocks[1].put(id, store.py[i]);
+                slotBlocks[2].put(id, store.vx[i]);
+                slotBlocks[3].put(id, store.vy[i]);
+            }
+        }
+        buffer.putLong(base + SharedStateFormat.PUBLISH_NANOS, System.nanoTime());
+
+        SharedStateFormat.LONGS.setRelease(buffer, base + SharedStateFormat.SEQUENCE, sequence + 2);
+        frames++;
+        SharedStateFormat.LONGS.setRelease(buffer, SharedStateFormat.FRAMES, frames);
+    }
+
+    /** Closes the file. The mapping stays valid for readers that have it open. */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** Returns the number of frames published so far */
+    public long getPublishedFrames() { return frames; }
+
+    public int getCapacity() { return capacity; }
+}
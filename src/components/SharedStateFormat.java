@@ -0,0 +1,72 @@
+package components;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/** Layout of the shared state file, shared by SharedStateExporter and
+ *  SharedStateReader.
+ *
+ *  The file starts with a header of HEADER_BYTES bytes: magic (int),
+ *  version (int), Boid capacity of a slot (int), slot count (int) and
+ *  the number of published frames (long).
+ *
+ *  The header is followed by SLOTS slots. Frame f (counting from 1) is
+ *  in slot (f - 1) % SLOTS, so the writer fills one slot while readers
+ *  read the newest frame from the other. A slot starts with a slot header
+ *  of SLOT_HEADER_BYTES bytes: sequence (long), step number (long), Boid
+ *  count n (int), reserved (int), world width (double), world height
+ *  (double) and the System.nanoTime() of publishing (long). The slot
+ *  header is followed by four blocks of capacity doubles: x positions,
+ *  y positions, x velocities and y velocities, of which the first n
+ *  are in use.
+ *
+ *  The sequence of a slot is a seqlock: it is odd while the slot is
+ *  written and grows by two with every frame written into the slot. A
+ *  reader that sees the same even sequence before and after reading a
+ *  slot has read a consistent frame.
+ *
+ *  All values are little endian and the longs and doubles are aligned.
+ */
+final class SharedStateFormat {
+    static final int MAGIC = 0x464C4B53; // "FLKS"
+    static final int VERSION = 1;
+    static final int SLOTS = 2;
+    static final int HEADER_BYTES = 64;
+    static final int SLOT_HEADER_BYTES = 64;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // Offsets in the header
+    static final int CAPACITY = 8;
+    static final int SLOT_COUNT = 12;
+    static final int FRAMES = 16;
+
+    // Offsets in a slot header
+    static final int SEQUENCE = 0;
+    static final int STEP = 8;
+    static final int COUNT = 16;
+    static final int WIDTH = 24;
+    static final int HEIGHT = 32;
+    static final int PUBLISH_NANOS = 40;
+
+    /** Ordered access to the longs of a mapped file, for the frame count
+     *  and the sequences */
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ORDER);
+
+    private SharedStateFormat() {}
+
+    /** Returns the size of a slot of the given capacity in bytes */
+    static long slotBytes(int capacity) {
+        return SLOT_HEADER_BYTES + 4L * capacity * Double.BYTES;
+    }
+
+    /** Returns the position of the given slot in the file */
+    static long slotOffset(int slot, int capacity) {
+        return HEADER_BYTES + slot * slotBytes(capacity);
+    }
+
+    /** Returns the size of a file of the given capacity in bytes */
+    static long fileBytes(int capacity) {
+        return slotOffset(SLOTS, capacity);
+    }
+}
@@ -0,0 +1,164 @@
+package components;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Reads the live frames published by a SharedStateExporter, possibly in
+ *  another process. This is also the reference for readers in other
+ *  languages, see SharedStateFormat.
+ *
+ *  A read takes the newest frame, copies it and checks with the seqlock
+ *  of its slot that the writer did not touch the slot meanwhile. If it
+ *  did, the read is retried on the then newest frame. The writer moves
+ *  to the other slot for the next frame, so a read only has to be
+ *  retried if it takes longer than a step.
+ *
+ *  The file must not be replaced while it is mapped, so a reader has to
+ *  be reopened when the simulation is restarted. Readers are meant to be
+ *  used from a single thread.
+ *
+ *  Usage: SharedStateReader FILE prints the newest frame once a second.
+ */
+public class SharedStateReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int[] slotOffsets = new int[SharedStateFormat.SLOTS];
+    private final DoubleBuffer[][] blocks = new DoubleBuffer[SharedStateFormat.SLOTS][4];
+    private long frame = 0;
+    private long step = 0;
+    private double width = 0;
+    private double height = 0;
+    private long publishNanos = 0;
+    private long retries = 0;
+
+    /** Maps the given shared state file
+     *
+     * @param path file written by a SharedStateExporter
+     * @throws IOException if the file cannot be mapped or is not a shared state file
+     */
+    public SharedStateReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            buffer.order(SharedStateFormat.ORDER);
+            if (size < SharedStateFormat.HEADER_BYTES
+                    || buffer.getInt(0) != SharedStateFormat.MAGIC
+                    || buffer.getInt(4) != SharedStateFormat.VERSION
+                    || buffer.getInt(SharedStateFormat.SLOT_COUNT) != SharedStateFormat.SLOTS
+                    || size < SharedStateFormat.fileBytes(buffer.getInt(SharedStateFormat.CAPACITY))) {
+                throw new IOException(path + " is not a shared state file");
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        capacity = buffer.getInt(SharedStateFormat.CAPACITY);
+        int blockBytes = capacity * Double.BYTES;
+        for (int slot = 0; slot < SharedStateFormat.SLOTS; slot++) {
+            slotOffsets[slot] = (int) SharedStateFormat.slotOffset(slot, capacity);
+            for (int block = 0; block < 4; block++) {
+                int offset = slotOffsets[slot] + SharedStateFormat.SLOT_HEADER_BYTES + block * blockBytes;
+                blocks[slot][block] = buffer.slice(offset, blockBytes).order(SharedStateFormat.ORDER).asDoubleBuffer();
+            }
+        }
+    }
+
+    /** Returns the number of frames published so far */
+    public long getPublishedFrames() {
+        return (long) SharedStateFormat.LONGS.getAcquire(buffer, SharedStateFormat.FRAMES);
+    }
+
+    /** Copies the newest frame into the given store. The store gets the
+     *  Boids of the frame; their accelerations are not part of the frame.
+     *
+     * @param store store to fill
+     * @return false if nothing has been published yet
+     */
+    public boolean read(BoidStore store) {
+        while (true) {
+            long newest = getPublishedFrames();
+            if (newest == 0) return false;
+            int slot = (int) ((newest - 1) % SharedStateFormat.SLOTS);
+            int base = slotOffsets[slot];
+            long sequence = (long) SharedStateFormat.LONGS.getAcquire(buffer, base + SharedStateFormat.SEQUENCE);
+            if ((sequence & 1) != 0) {
+                retries++;
+                Thread.onSpinWait();
+                continue;
+            }
+
+            // Values may be torn until the sequence is checked, so the count is clamped
+            long frameStep = buffer.getLong(base + SharedStateFormat.STEP);
+            int n = Math.min(Math.max(buffer.getInt(base + SharedStateFormat.COUNT), 0), capacity);
+            double frameWidth = buffer.getDouble(base + SharedStateFormat.WIDTH);
+            double frameHeight = buffer.getDouble(base + SharedStateFormat.HEIGHT);
+            long frameNanos = buffer.getLong(base + SharedStateFormat.PUBLISH_NANOS);
+            store.truncate(0);
+            store.extend(n);
+            DoubleBuffer[] slotBlocks = blocks[slot];
+            slotBlocks[0].get(0, store.px, 0, n);
+            slotBlocks[1].get(0, store.py, 0, n);
+            slotBlocks[2].get(0, store.vx, 0, n);
+            slotBlocks[3].get(0, store.vy, 0, n);
+
+            VarHandle.loadLoadFence();
+            if ((long) SharedStateFormat.LONGS.getVolatile(buffer, base + SharedStateFormat.SEQUENCE) != sequence) {
+                retries++;
+                continue;
+            }
+            frame = newest;
+            step = frameStep;
+            width = frameWidth;
+            height = frameHeight;
+            publishNanos = frameNanos;
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** Returns the number of the last frame read, counting from 1 */
+    public long getFrame() { return frame; }
+    /** Returns the simulation step of the last frame read */
+    public long getStep() { return step; }
+    public double getWidth() { return width; }
+    public double getHeight() { return height; }
+    /** Returns the System.nanoTime() at which the last frame read was published */
+    public long getPublishNanos() { return publishNanos; }
+    /** Returns the number of reads that had to be repeated because the writer was in the slot */
+    public long getRetries() { return retries; }
+    public int getCapacity() { return capacity; }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 1) {
+            System.err.println("Usage: SharedStateReader FILE");
+            System.exit(2);
+        }
+        BoidStore store = new BoidStore();
+        try (SharedStateReader reader = new SharedStateReader(Path.of(args[0]))) {
+            while (true) {
+                if (reader.read(store)) {
+                    double x = 0, y = 0;
+                    for (int i = 0; i < store.size(); i++) {
+                        x += store.px[i];
+                        y += store.py[i];
+                    }
+                    int n = Math.max(store.size(), 1);
+                    System.out.printf("frame %d, step %d, %d boids, world %.0f x %.0f, center (%.1f, %.1f), %d retries%n",
+                            reader.getFrame(), reader.getStep(), store.size(), reader.getWidth(), reader.getHeight(), x / n, y / n, reader.getRetries());
+                }
+                Thread.sleep(1000);
+            }
+        }
+    }
+}
@@ -0,0 +1,591 @@
+package components;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/** The flock simulation without any GUI. A step consists of
+ *  updateEntityCount, updateAccelerations and move, which the
+ *  caller may run separately or with step.
+ *
+ *  The parameters are an immutable SimulationParams that GUI controls
+ *  replace with updateParams. Each step works on the parameters that were
+ *  current when it started, so a change never applies halfway through.
+ *
+ *  All randomness comes from a SimulationRandom, so a simulation started
+ *  with setSeed runs the same way every time, in parallel or not.
+ *
+ *  Every few steps the Boids are reordered in the store along a Morton
+ *  curve, so that Boids close to each other are also close in memory,
+ *  see setReorderInterval. The ids of the Boids in the store stay the same.
+ */
+public class Simulation {
+
+    /** Ways to find the neighbors of a Boid. Brute force compares every
+     *  pair of Boids and is kept as a reference for the spatial grid.
+     *  Quadtree approximates alignment and cohesion with a Barnes-Hut
+     *  style tree for large radii and finds separation neighbors with
+     *  the spatial grid. Verlet list keeps a NeighborList over several
+     *  steps and gives the same results as brute force. */
+    public enum NeighborSearch { BRUTE_FORCE, SPATIAL_GRID, QUADTREE, VERLET_LIST }
+
+    /** Implementations of the neighbor loop. The vector kernel needs the
+     *  jdk.incubator.vector module and the spatial grid, otherwise the
+     *  scalar kernel is used. */
+    public enum Kernel { SCALAR, VECTOR }
+
+    /** Precision of the Boid state. With FLOAT, the neighbor loops of
+     *  the spatial grid read and sum single precision copies of the Boids,
+     *  which halves their memory traffic, and the accelerations, positions
+     *  and velocities are rounded to float every step. The other neighbor
+     *  searches keep their double loops but see the rounded state. */
+    public enum Precision { DOUBLE, FLOAT }
+
+    /** Edges of the world. With WALLS, Boids are pushed away from the edges
+     *  and kept inside. With TOROIDAL, Boids leaving at one edge come back
+     *  at the opposite edge, and Boids interact with the nearest image of
+     *  each other across the edges, see PeriodicBoundary. There are no
+     *  border forces in a toroidal world. */
+    public enum Boundary { WALLS, TOROIDAL }
+
+    /** Default number of steps between reorders, see setReorderInterval */
+    public static final int DEFAULT_REORDER_INTERVAL = 20;
+
+    /** Default skin of the Verlet lists, see setNeighborListSkin */
+    public static final double DEFAULT_NEIGHBOR_LIST_SKIN = 10;
+
+    /** Largest supported Boid count */
+    public static final int MAX_ENTITY_COUNT = 1_000_000;
+
+    // Spawns of fewer Boids are not worth handing to the executor
+    private static final int PARALLEL_SPAWN_COUNT = 4096;
+
+    /** True if the Vector API can be used. VectorKernel must not be
+     *  loaded if this is false. */
+    public static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final AtomicReference<SimulationParams> params = new AtomicReference<>(SimulationParams.DEFAULTS);
+
+    private final BoidStore boids = new BoidStore();
+    private final SpatialGrid grid = new SpatialGrid();
+    private final Quadtree quadtree = new Quadtree();
+    private final NeighborList neighborList = new NeighborList();
+    private double neighborListSkin = DEFAULT_NEIGHBOR_LIST_SKIN;
+    private final MortonOrder mortonOrder = new MortonOrder();
+    private int reorderInterval = DEFAULT_REORDER_INTERVAL;
+    private final ObstacleField obstacleField = new ObstacleField();
+    private volatile List<Obstacle> obstacles = List.of();
+    private NeighborSearch neighborSearch = NeighborSearch.SPATIAL_GRID;
+    private boolean parallel = true;
+    private Kernel kernel = Kernel.SCALAR;
+    private Precision precision = Precision.DOUBLE;
+    private Boundary boundary = Boundary.WALLS;
+    private SimulationExecutor executor = null;
+    private final SimulationMetrics metrics = new SimulationMetrics();
+    private final LongAdder neighborTotal = new LongAdder();
+    private SimulationRandom random = new SimulationRandom(System.nanoTime());
+    private long stepCount = 0;
+    private long spawnCount = 0;
+
+
+    /* Private methods */
+
+    /** Returns the multiplier that scales vector (x, y) to the given length.
+     *  Zero vectors are left as they are.
+     */
+    private static double magnitudeFactor(double x, double y, double length) {
+        double len = Math.sqrt(x*x + y*y);
+        return len == 0 ? 1 : length / len;
+    }
+
+    /** Returns the multiplier that limits the length of vector (x, y) to
+     *  the given maximum length.
+     */
+    private static double limitFactor(double x, double y, double maxLength) {
+        double len = Math.sqrt(x*x + y*y);
+        return len > maxLength ? maxLength / len : 1;
+    }
+
+    /** Places Boid 'index' of 'boids' at a random location with a
+     *  random velocity. Allocates nothing and depends only on the seed
+     *  and the spawn number, so Boids can be created in any order.
+     *
+     * @param index index of the Boid
+     * @param spawn number of the spawn since the seed was set
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    private void createBoid(int index, long spawn, double xLimit, double yLimit) {
+        // Each spawn uses a block of Entity.SPAWN_COUNTERS + 2 counters
+        long stream = SimulationRandom.stream(SimulationRandom.SPAWN, 0);
+        long counter = spawn * (Entity.SPAWN_COUNTERS + 2);
+        double randX = random.nextDouble(stream, counter) * xLimit;
+        double randY = random.nextDouble(stream, counter + 1) * yLimit;
+        Entity.spawn(boids, index, randX, randY, random, stream, counter + 2);
+    }
+
+
+    /* Public methods */
+
+    /** Runs one full simulation step
+     *
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void step(double xLimit, double yLimit) {
+        SimulationParams params = getParams();
+        updateEntityCount(params, xLimit, yLimit);
+        updateAccelerations(params, xLimit, yLimit);
+        move(xLimit, yLimit);
+    }
+
+    /** Updates the entity count to the current parameters,
+     *  see updateEntityCount(SimulationParams, double, double)
+     *
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void updateEntityCount(double xLimit, double yLimit) {
+        updateEntityCount(getParams(), xLimit, yLimit);
+    }
+
+    /** Updates changed entity (i.e. Boid) count by either creating new
+     *  entities or removing them. If the entity count of the parameters
+     *  equals 'boids' size, does nothing.
+     *
+     * @param params parameters of the step
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void updateEntityCount(SimulationParams params, double xLimit, double yLimit) {
+        int diff = params.entityCount() - boids.size();
+        if (diff > 0) spawn(diff, xLimit, yLimit);
+        else if (diff < 0) despawn(-diff);
+    }
+
+    /** Adds the given number of Boids at random locations at once.
+     *  The store grows at most once, and large batches are filled in
+     *  parallel unless parallelism is disabled.
+     *
+     * @param count number of Boids to add
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void spawn(int count, double xLimit, double yLimit) {
+        if (count <= 0) return;
+        final int first = boids.extend(count);
+        final long firstSpawn = spawnCount;
+        spawnCount += count;
+        SimulationExecutor.RangeAction action = (from, to, sums) -> {
+            for (int k = from; k < to; k++) createBoid(first + k, firstSpawn + k, xLimit, yLimit);
+        };
+        if (count >= PARALLEL_SPAWN_COUNT) getExecutor().forEachRange(count, parallel, action);
+        else action.run(0, count, null);
+    }
+
+    /** Removes the given number of Boids from the end of the store.
+     *  Their slots stay allocated for later spawns.
+     *
+     * @param count number of Boids to remove
+     */
+    public void despawn(int count) {
+        boids.truncate(boids.size() - count);
+    }
+
+
+    /** Updates the accelerations with the current parameters,
+     *  see updateAccelerations(SimulationParams, double, double)
+     *
+     * @param xLimit the xLimit of the world, used to determine borders
+     * @param yLimit the xLimit of the world, used to determine borders
+     */
+    public void updateAccelerations(double xLimit, double yLimit) {
+        updateAccelerations(getParams(), xLimit, yLimit);
+    }
+
+    /** Updates the accelerations of all entities (i.e. Boids)
+     *  by using alignment, cohesion and separation forces in
+     *  conjunction with border and obstacle forces.
+     *
+     * @param params parameters of the step
+     * @param xLimit the xLimit of the world, used to determine borders
+     * @param yLimit the xLimit of the world, used to determine borders
+     */
+    public void updateAccelerations(SimulationParams params, double xLimit, double yLimit) {
+        // Replaces the arrays of the store, so it comes before they are read
+        if (reorderInterval > 0 && stepCount % reorderInterval == 0) reorder(xLimit, yLimit);
+        final boolean measure = metrics.isEnabled();
+        final long startTime = measure ? System.nanoTime() : 0;
+        final double[] px = boids.px, py = boids.py, vx = boids.vx, vy = boids.vy, ax = boids.ax, ay = boids.ay;
+        final int[] id = boids.id;
+        final int count = boids.size();
+        final int alignmentDistance = params.alignmentDistance();
+        final int cohesionDistance = params.cohesionDistance();
+        final int separationDistance = params.separationDistance();
+        final double maxSpeed = params.maxSpeed();
+        final double maxForce = params.maxForce();
+        final double alignmentMultiplier = params.alignmentMultiplier();
+        final double cohesionMultiplier = params.cohesionMultiplier();
+        final double separationMultiplier = params.separationMultiplier();
+        // A neighbor is seen if the angle between the velocity and the direction
+        // to the neighbor is at most half of the detection angle, that is, if the
+        // cosine of the angle is at least the cosine of half of the detection angle.
+        // Wide angles are not tested, see FieldOfView.MAX_TESTED_ANGLE.
+        final boolean useFieldOfView = params.detectionAngle() < FieldOfView.MAX_TESTED_ANGLE;
+        final double cosHalfAngle = Math.cos(Math.toRadians(params.detectionAngle() / 2));
+        final double sinHalfAngle = Math.sin(Math.toRadians(params.detectionAngle() / 2));
+        final boolean toroidal = boundary == Boundary.TOROIDAL;
+        // The quadtree is also searched around the images of a Boid across the edges.
+        // A radius over half of the world would find some Boids around two images,
+        // so such radii fall back to the grid, which finds every Boid once.
+        final double quadtreeRadius = Math.max(alignmentDistance, cohesionDistance);
+        final boolean quadtreeImagesOverlap = toroidal && 2 * quadtreeRadius > Math.min(xLimit, yLimit);
+        // With the quadtree, the grid is only used for separation
+        final boolean useQuadtree = neighborSearch == NeighborSearch.QUADTREE && !quadtreeImagesOverlap;
+        final int gridAlignmentDistance = useQuadtree ? 0 : alignmentDistance;
+        final int gridCohesionDistance = useQuadtree ? 0 : cohesionDistance;
+        // The radius tests compare squared distances, so the square root is only
+        // taken for separation neighbors. The squared radii are exact, so this only
+        // differs from comparing distances within a rounding error of the radius
+        final double squaredAlignmentDistance = useQuadtree ? 0 : params.squaredAlignmentDistance();
+        final double squaredCohesionDistance = useQuadtree ? 0 : params.squaredCohesionDistance();
+        final double squaredSeparationDistance = params.squaredSeparationDistance();
+        final double openingAngle = params.openingAngle();
+        final int maxDistance = Math.max(gridAlignmentDistance, Math.max(gridCohesionDistance, separationDistance));
+        // Candidates at least this far cannot pass any of the radius tests
+        final double squaredMaxDistance = (double) maxDistance * maxDistance;
+        final boolean useGrid = neighborSearch == NeighborSearch.SPATIAL_GRID || neighborSearch == NeighborSearch.QUADTREE;
+        final boolean useList = neighborSearch == NeighborSearch.VERLET_LIST;
+        final boolean useVector = neighborSearch == NeighborSearch.SPATIAL_GRID && getKernel() == Kernel.VECTOR;
+        final boolean singlePrecision = precision == Precision.FLOAT;
+        final boolean useFloatKernel = singlePrecision && neighborSearch == NeighborSearch.SPATIAL_GRID;
+        final NeighborList neighborList = this.neighborList;
+        // The Boids are walked in the cell order of the grid of the lists
+        final SpatialGrid grid = useList ? neighborList.getGrid() : this.grid;
+        final boolean useTiles = useGrid || useList;
+        final Quadtree quadtree = this.quadtree;
+        final ObstacleField obstacleField = this.obstacleField;
+        final SimulationRandom random = this.random;
+        // Offsets of coincident Boids are numbered by Boid and pair, see SimulationRandom
+        final long offsetStream = SimulationRandom.stream(SimulationRandom.SEPARATION, stepCount);
+
+        if (useGrid) grid.rebuild(boids, xLimit, yLimit, maxDistance, useFloatKernel, toroidal);
+        if (useQuadtree) quadtree.rebuild(boids);
+        if (useList) {
+            boolean rebuilt = neighborList.update(boids, xLimit, yLimit, maxDistance, neighborListSkin, toroidal, getExecutor(), parallel);
+            if (measure) metrics.recordRebuild(rebuilt);
+        }
+        // A toroidal world has no borders, so without obstacles there is no field
+        final List<Obstacle> obstacles = this.obstacles;
+        final boolean useObstacleField = !toroidal || !obstacles.isEmpty();
+        if (useObstacleField) obstacleField.update(xLimit, yLimit, obstacles, !toroidal);
+
+        // Loop all entities and update their accelerations, in parallel unless disabled.
+        // With the grid the executor hands out entry ranges tile by tile.
+        SimulationExecutor.RangeAction action = (from, to, sums) -> {
+            long rangeNeighbors = 0;
+            for (int entry = from; entry < to; entry++) {
+                final int i = useTiles ? grid.entry(entry) : entry;
+                final double x = px[i], y = py[i];
+                final double minDot = useFieldOfView ? cosHalfAngle * Math.sqrt(vx[i]*vx[i] + vy[i]*vy[i]) : 0;
+                int alignmentNeighbors = 0;
+                int cohesionNeighbors = 0;
+                int separationNeighbors = 0;
+                double alignmentX = 0, alignmentY = 0;
+                double cohesionX = 0, cohesionY = 0;
+                double separationX = 0, separationY = 0;
+
+                if (useVector || useFloatKernel) {
+                    if (useVector && useFloatKernel) {
+                        FloatVectorKernel.sumNeighbors(grid, (float) x, (float) y, (float) vx[i], (float) vy[i], useFieldOfView, (float) minDot, cosHalfAngle, sinHalfAngle,
+                                alignmentDistance, cohesionDistance, separationDistance,
+                                random, offsetStream, offsetCounter(id[i], 0), sums);
+                    }
+                    else if (useFloatKernel) {
+                        FloatKernel.sumNeighbors(grid, entry, (float) x, (float) y, (float) vx[i], (float) vy[i], useFieldOfView, (float) minDot, cosHalfAngle, sinHalfAngle,
+                                alignmentDistance, cohesionDistance, separationDistance,
+                                random, offsetStream, offsetCounter(id[i], 0), sums);
+                    }
+                    else {
+                        VectorKernel.sumNeighbors(grid, x, y, vx[i], vy[i], useFieldOfView, minDot, cosHalfAngle, sinHalfAngle,
+                                alignmentDistance, cohesionDistance, separationDistance,
+                                random, offsetStream, offsetCounter(id[i], 0), sums);
+                    }
+                    alignmentNeighbors = sums.alignmentNeighbors;
+                    cohesionNeighbors = sums.cohesionNeighbors;
+                    separationNeighbors = sums.separationNeighbors;
+                    alignmentX = sums.alignmentX;
+                    alignmentY = sums.alignmentY;
+                    cohesionX = sums.cohesionX;
+                    cohesionY = sums.cohesionY;
+                    separationX = sums.separationX;
+                    separationY = sums.separationY;
+                }
+                else {
+                    // Use nearby entities to determinate forces. The grid gives the
+                    // ranges of the cells around the Boid, brute force is handled as
+                    // a single range of every entity, and a neighbor list as a
+                    // single range of the listed entities.
+                    int coincident = 0;
+                    BlockRanges ranges = null;
+                    if (useGrid) {
+                        if (sums.ranges == null) sums.ranges = new BlockRanges();
+                        ranges = sums.ranges;
+                        ranges.fill(grid, x, y, vx[i], vy[i], useFieldOfView, cosHalfAngle, sinHalfAngle, false);
+                    }
+                    int rangeCount = useGrid ? ranges.count : 1;
+                    for (int range = 0; range < rangeCount; range++) {
+                        int start = useGrid ? ranges.start[range] : useList ? neighborList.start(i) : 0;
+                        int end = useGrid ? ranges.end[range] : useList ? neighborList.end(i) : count;
+                        // Cells completely in the field of view need no test per Boid
+                        boolean testAngle = useFieldOfView && (!useGrid || ranges.testAngle[range]);
+                        for (int k = start; k < end; k++) {
+                            int j = useGrid ? grid.entry(k) : useList ? neighborList.neighbor(k) : k;
+                            if (j == i) continue;
+                            final double ox = toroidal ? PeriodicBoundary.image(px[j], x, xLimit) : px[j];
+                            final double oy = toroidal ? PeriodicBoundary.image(py[j], y, yLimit) : py[j];
+                            double dx = x - ox;
+                            double dy = y - oy;
+                            double squaredDistance = dx*dx + dy*dy;
+                            // (dx, dy) points from the neighbor to this Boid, so the dot product is negated.
+                            // Both tests are done before a single branch, which is easier to predict.
+                            if (squaredDistance >= squaredMaxDistance
+                                    | (testAngle && FieldOfView.isHidden(-(vx[i]*dx + vy[i]*dy), minDot, squaredDistance))) continue;
+
+                            if (squaredDistance < squaredAlignmentDistance) {
+                                alignmentNeighbors++;
+                                alignmentX += vx[j];
+                                alignmentY += vy[j];
+                            }
+                            if (squaredDistance < squaredCohesionDistance) {
+                                cohesionNeighbors++;
+                                cohesionX += ox;
+                                cohesionY += oy;
+                            }
+                            if (squaredDistance < squaredSeparationDistance) {
+                                double dist = Math.max(Math.sqrt(squaredDistance), 0.001);
+                                separationNeighbors++;
+                                if (dx == 0 && dy == 0) {
+                                    long counter = offsetCounter(id[i], coincident++);
+                                    dx = random.nextOffset(offsetStream, counter);
+                                    dy = random.nextOffset(offsetStream, counter + 2);
+                                }
+                                separationX += dx / (dist*dist);
+                                separationY += dy / (dist*dist);
+                            }
+                        }
+                    }
+
+                    if (useQuadtree) {
+                        // Images are the Boid shifted by the world size across edges within the
+                        // radius. Neighbors found around an image are shifted back for cohesion.
+                        // The radius is at most half of the world, so no Boid is found twice.
+                        int lastImageX = toroidal && x < quadtreeRadius ? 1 : 0;
+                        int lastImageY = toroidal && y < quadtreeRadius ? 1 : 0;
+                        for (int imageY = toroidal && y > yLimit - quadtreeRadius ? -1 : 0; imageY <= lastImageY; imageY++) {
+                            for (int imageX = toroidal && x > xLimit - quadtreeRadius ? -1 : 0; imageX <= lastImageX; imageX++) {
+                                double shiftX = imageX * xLimit, shiftY = imageY * yLimit;
+                                quadtree.sumNeighbors(i, x + shiftX, y + shiftY, vx[i], vy[i], useFieldOfView, cosHalfAngle, sinHalfAngle, minDot,
+                                        alignmentDistance, cohesionDistance, openingAngle, sums);
+                                alignmentNeighbors += sums.alignmentNeighbors;
+                                cohesionNeighbors += sums.cohesionNeighbors;
+                                alignmentX += sums.alignmentX;
+                                alignmentY += sums.alignmentY;
+                                cohesionX += sums.cohesionX - sums.cohesionNeighbors * shiftX;
+                                cohesionY += sums.cohesionY - sums.cohesionNeighbors * shiftY;
+                            }
+                        }
+                    }
+                }
+
+                double f;
+                if (alignmentNeighbors != 0) {
+                    alignmentX /= alignmentNeighbors;
+                    alignmentY /= alignmentNeighbors;
+                    f = magnitudeFactor(alignmentX, alignmentY, maxSpeed);
+                    alignmentX = alignmentX * f - vx[i];
+                    alignmentY = alignmentY * f - vy[i];
+                    f = limitFactor(alignmentX, alignmentY, maxForce);
+                    alignmentX *= f;
+                    alignmentY *= f;
+                }
+                if (cohesionNeighbors != 0) {
+                    cohesionX = cohesionX / cohesionNeighbors - x;
+                    cohesionY = cohesionY / cohesionNeighbors - y;
+                    f = magnitudeFactor(cohesionX, cohesionY, maxSpeed);
+                    cohesionX = cohesionX * f - vx[i];
+                    cohesionY = cohesionY * f - vy[i];
+                    f = limitFactor(cohesionX, cohesionY, maxForce);
+                    cohesionX *= f;
+                    cohesionY *= f;
+                }
+                if (separationNeighbors != 0) {
+                    separationX /= separationNeighbors;
+                    separationY /= separationNeighbors;
+                    f = magnitudeFactor(separationX, separationY, maxSpeed);
+                    separationX = separationX * f - vx[i];
+                    separationY = separationY * f - vy[i];
+                    f = limitFactor(separationX, separationY, maxForce);
+                    separationX *= f;
+                    separationY *= f;
+                }
+
+                double accX = ax[i] + alignmentX * alignmentMultiplier + cohesionX * cohesionMultiplier + separationX * separationMultiplier;
+                double accY = ay[i] + alignmentY * alignmentMultiplier + cohesionY * cohesionMultiplier + separationY * separationMultiplier;
+                f = limitFactor(accX, accY, maxSpeed);
+                accX *= f;
+                accY *= f;
+
+                // Border and obstacle force
+                if (useObstacleField) {
+                    accX += obstacleField.forceXAt(x, y);
+                    accY += obstacleField.forceYAt(x, y);
+                }
+                f = limitFactor(accX, accY, maxSpeed);
+                ax[i] = singlePrecision ? (float) (accX * f) : accX * f;
+                ay[i] = singlePrecision ? (float) (accY * f) : accY * f;
+
+                // The rule with the largest radius counts every seen neighbor within it
+                if (measure) rangeNeighbors += Math.max(alignmentNeighbors, Math.max(cohesionNeighbors, separationNeighbors));
+            }
+            if (measure) neighborTotal.add(rangeNeighbors);
+        };
+        if (useTiles) getExecutor().forEachTile(grid, parallel, action);
+        else getExecutor().forEachRange(count, parallel, action);
+
+        stepCount++;
+        if (measure) metrics.recordUpdate(System.nanoTime() - startTime, count, neighborTotal.sumThenReset());
+    }
+
+    /** Returns the first random counter of the given coincident pair of
+     *  a Boid. A pair uses four counters, two per offset.
+     *
+     * @param boid id of the Boid, which does not change when it is reordered
+     * @param pair number of the coincident pair of the Boid
+     * @return counter in the separation stream of the step
+     */
+    static long offsetCounter(int boid, int pair) {
+        return ((long) boid << 32) + 4L * pair;
+    }
+
+    /** Reorders the Boids in the store along a Morton curve of their
+     *  positions, which is done every few steps by updateAccelerations.
+     *
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void reorder(double xLimit, double yLimit) {
+        final boolean measure = metrics.isEnabled();
+        final long startTime = measure ? System.nanoTime() : 0;
+        boids.reorder(mortonOrder.sort(boids, xLimit, yLimit, getExecutor(), parallel));
+        if (measure) metrics.recordTime(SimulationMetrics.Metric.REORDER, System.nanoTime() - startTime, boids.size());
+    }
+
+    /** Moves all Boids by their accelerations. Boids are kept inside
+     *  the world, or wrapped around in a toroidal world.
+     *
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void move(double xLimit, double yLimit) {
+        final boolean measure = metrics.isEnabled();
+        final long startTime = measure ? System.nanoTime() : 0;
+        if (boundary == Boundary.TOROIDAL) {
+            for (int i = 0; i < boids.size(); i++) { boids.moveWrapped(i, xLimit, yLimit); }
+            if (precision == Precision.FLOAT) {
+                for (int i = 0; i < boids.size(); i++) { boids.roundToSingle(i); }
+            }
+        }
+        else if (precision == Precision.FLOAT) {
+            for (int i = 0; i < boids.size(); i++) { boids.moveSingle(i, xLimit, yLimit); }
+        }
+        else {
+            for (int i = 0; i < boids.size(); i++) { boids.move(i, xLimit, yLimit); }
+        }
+        if (measure) metrics.recordTime(SimulationMetrics.Metric.MOVE, System.nanoTime() - startTime, boids.size());
+    }
+
+    public BoidStore getBoids() { return boids; }
+
+    /** Restarts the random numbers from the given seed. A new simulation
+     *  given the same seed, parameters and world size makes the same Boids
+     *  and moves them the same way, regardless of the executor. */
+    public void setSeed(long seed) {
+        random = new SimulationRandom(seed);
+        stepCount = 0;
+        spawnCount = 0;
+    }
+    public long getSeed() { return random.getSeed(); }
+
+    /** Returns the metrics of this simulation. The simulation records
+     *  the update and move times and the neighbor counts while the
+     *  metrics are enabled. */
+    public SimulationMetrics getMetrics() { return metrics; }
+
+    /** Replaces the static obstacles that the Boids avoid. The force
+     *  field of the obstacles is rebuilt on the next step. */
+    public void setObstacles(List<Obstacle> obstacles) { this.obstacles = List.copyOf(obstacles); }
+    public List<Obstacle> getObstacles() { return obstacles; }
+
+    /** Returns the current parameters */
+    public SimulationParams getParams() { return params.get(); }
+
+    /** Replaces the parameters. The change applies from the next step. */
+    public void setParams(SimulationParams params) { this.params.set(params); }
+
+    /** Replaces the parameters with the result of the given function on
+     *  the current parameters. The update is atomic, so concurrent updates
+     *  of different parameters are not lost.
+     *
+     * @param update function that returns the new parameters, e.g. p -> p.withMaxSpeed(4)
+     */
+    public void updateParams(UnaryOperator<SimulationParams> update) { params.updateAndGet(update); }
+
+    public NeighborSearch getNeighborSearch() { return neighborSearch; }
+    public void setNeighborSearch(NeighborSearch neighborSearch) { this.neighborSearch = neighborSearch; }
+
+    /** Returns the extra distance of the Verlet lists beyond the largest radius */
+    public double getNeighborListSkin() { return neighborListSkin; }
+
+    /** Sets the extra distance of the Verlet lists beyond the largest radius.
+     *  The lists are rebuilt once a Boid has moved half of it, so a larger
+     *  skin rebuilds less often but makes longer lists. */
+    public void setNeighborListSkin(double skin) { this.neighborListSkin = Math.max(skin, 0); }
+
+    /** Returns the number of steps between reorders of the store, 0 if off */
+    public int getReorderInterval() { return reorderInterval; }
+
+    /** Sets the number of steps between reorders of the store, see reorder.
+     *  0 turns reordering off. */
+    public void setReorderInterval(int reorderInterval) { this.reorderInterval = Math.max(reorderInterval, 0); }
+
+    /** Returns the number of times the Verlet lists have been built */
+    public long getNeighborListBuilds() { return neighborList.getBuildCount(); }
+
+    public Precision getPrecision() { return precision; }
+    public void setPrecision(Precision precision) { this.precision = precision; }
+
+    /** Returns the kernel in use, which is SCALAR if the vector
+     *  kernel was requested but the Vector API is not available */
+    public Kernel getKernel() { return VECTOR_API_AVAILABLE ? kernel : Kernel.SCALAR; }
+    public void setKernel(Kernel kernel) { this.kernel = kernel; }
+
+    public Boundary getBoundary() { return boundary; }
+    public void setBoundary(Boundary boundary) { this.boundary = boundary; }
+
+    /** Returns the executor of the parallel work. If none has been set,
+     *  creates one with a thread per processor and default tiles. */
+    public SimulationExecutor getExecutor() {
+        if (executor == null) executor = new SimulationExecutor(Runtime.getRuntime().availableProcessors(), SimulationExecutor.DEFAULT_TILE_SIZE);
+        return executor;
+    }
+    /** Replaces the executor. The previous executor is shut down. */
+    public void setExecutor(SimulationExecutor executor) {
+        if (this.executor != null) this.executor.shutdown();
+        this.executor = executor;
+    }
+
+    public boolean isParallel() { return parallel; }
+    public void setParallel(boolean parallel) { this.parallel = parallel; }
+}
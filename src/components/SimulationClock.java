@@ -0,0 +1,67 @@
+package components;
+
+import java.util.concurrent.locks.LockSupport;
+
+/** A fixed timestep clock for the simulation thread.
+ *
+ *  Ticks are scheduled at a constant rate independent of the frame
+ *  rate of the GUI. When a step takes longer than one tick, the
+ *  following ticks are run back to back until the clock has caught up.
+ *  If the clock falls more than MAX_CATCH_UP_TICKS ticks behind, the
+ *  backlog is dropped and the schedule restarts from the current time,
+ *  so a slow machine runs the simulation slower instead of stalling.
+ */
+public class SimulationClock {
+    public static final int MAX_CATCH_UP_TICKS = 5;
+
+    private long tickNanos;
+    private long nextTick = 0;
+    private long droppedTicks = 0;
+
+    /** Creates a clock with the given tick rate
+     *
+     * @param tickRate ticks per second
+     */
+    public SimulationClock(double tickRate) { setTickRate(tickRate); }
+
+    /** Changes the tick rate. Takes effect from the next tick.
+     *
+     * @param tickRate ticks per second, at least 1
+     */
+    public void setTickRate(double tickRate) {
+        tickNanos = (long) (1e9 / Math.max(tickRate, 1));
+    }
+
+    /** Changes the length of a tick. Takes effect from the next tick.
+     *
+     * @param tickNanos length of a tick in nanoseconds, at least 1
+     */
+    public void setTickNanos(long tickNanos) {
+        this.tickNanos = Math.max(tickNanos, 1);
+    }
+
+    /** Waits until the next tick is due and returns its scheduled time.
+     *  Returns immediately if the clock is behind schedule.
+     *
+     * @return scheduled time of the tick in System.nanoTime() units
+     */
+    public long awaitTick() {
+        long now = System.nanoTime();
+        if (nextTick == 0) nextTick = now;
+        long behind = now - nextTick;
+        if (behind > MAX_CATCH_UP_TICKS * tickNanos) {
+            droppedTicks += behind / tickNanos;
+            nextTick = now;
+        }
+        while ((now = System.nanoTime()) < nextTick) { LockSupport.parkNanos(nextTick - now); }
+        long tick = nextTick;
+        nextTick += tickNanos;
+        return tick;
+    }
+
+    /** Returns the length of a tick in nanoseconds */
+    public long getTickNanos() { return tickNanos; }
+
+    /** Returns the number of ticks dropped because the simulation fell behind */
+    public long getDroppedTicks() { return droppedTicks; }
+}
@@ -0,0 +1,172 @@
+package components;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/** Runs the per-Boid work of a simulation step on a dedicated ForkJoinPool.
+ *
+ *  With the spatial grid, the work is split into square tiles of grid
+ *  cells. A tile is the unit of work, so a worker handles Boids that are
+ *  close to each other and share most of their neighbor candidates.
+ *  Ranges of tiles are split in halves and idle workers steal the halves.
+ *  Without a grid, the work is split into ranges of Boid indices instead.
+ *
+ *  The pool is separate from the common pool, so other users of the
+ *  common pool neither slow down the simulation nor get slowed down by it.
+ */
+public class SimulationExecutor {
+
+    /** Work on a range of grid entries or Boid indices */
+    interface RangeAction {
+        /** Handles entries from (inclusive) to to (exclusive)
+         *  using the given scratch sums */
+        void run(int from, int to, NeighborSums sums);
+    }
+
+    public static final int DEFAULT_TILE_SIZE = 4;
+
+    // Boids per task when there is no grid to split into tiles
+    private static final int RANGE_SIZE = 256;
+
+    private final ForkJoinPool pool;
+    private final int threads;
+    private final int tileSize;
+
+    /** Creates an executor
+     *
+     * @param threads number of worker threads, at least 1
+     * @param tileSize width and height of a tile in grid cells, at least 1
+     */
+    public SimulationExecutor(int threads, int tileSize) {
+        this.threads = Math.max(threads, 1);
+        this.tileSize = Math.max(tileSize, 1);
+        this.pool = new ForkJoinPool(this.threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("simulation-worker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /** Runs the action over all entries of the grid, one tile at a time.
+     *  The action is called once per row of a tile with the entries of
+     *  that row, which are contiguous in the grid.
+     *
+     * @param grid grid rebuilt for the current step
+     * @param parallel false to run in the calling thread
+     * @param action action to run
+     */
+    void forEachTile(SpatialGrid grid, boolean parallel, RangeAction action) {
+        int tileColumns = (grid.getColumns() + tileSize - 1) / tileSize;
+        int tileRows = (grid.getRows() + tileSize - 1) / tileSize;
+        TileTask task = new TileTask(grid, action, tileColumns, 0, tileColumns * tileRows);
+        if (parallel) pool.invoke(task);
+        else task.computeDirectly();
+    }
+
+    /** Runs the action over indices 0 .. count-1 in ranges
+     *
+     * @param count number of indices
+     * @param parallel false to run in the calling thread
+     * @param action action to run
+     */
+    void forEachRange(int count, boolean parallel, RangeAction action) {
+        forEachRange(count, RANGE_SIZE, parallel, action);
+    }
+
+    /** Runs the action over indices 0 .. count-1 in ranges of at most
+     *  'grain' indices, for work whose indices are large units
+     *
+     * @param count number of indices
+     * @param grain largest number of indices per range, at least 1
+     * @param parallel false to run in the calling thread
+     * @param action action to run
+     */
+    void forEachRange(int count, int grain, boolean parallel, RangeAction action) {
+        RangeTask task = new RangeTask(action, 0, count, Math.max(grain, 1));
+        if (parallel) pool.invoke(task);
+        else task.computeDirectly();
+    }
+
+    /** Stops the worker threads */
+    public void shutdown() { pool.shutdown(); }
+
+    public int getThreads() { return threads; }
+    public int getTileSize() { return tileSize; }
+
+
+    /** Handles tiles first .. last-1, numbered row by row */
+    private class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final SpatialGrid grid;
+        private final RangeAction action;
+        private final int tileColumns;
+        private final int first;
+        private final int last;
+
+        TileTask(SpatialGrid grid, RangeAction action, int tileColumns, int first, int last) {
+            this.grid = grid;
+            this.action = action;
+            this.tileColumns = tileColumns;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new TileTask(grid, action, tileColumns, first, middle),
+                          new TileTask(grid, action, tileColumns, middle, last));
+            }
+            else computeDirectly();
+        }
+
+        /** Handles all tiles of this task without splitting */
+        void computeDirectly() {
+            NeighborSums sums = new NeighborSums();
+            for (int tile = first; tile < last; tile++) {
+                int firstColumn = (tile % tileColumns) * tileSize;
+                int lastColumn = Math.min(firstColumn + tileSize, grid.getColumns()) - 1;
+                int firstRow = (tile / tileColumns) * tileSize;
+                int lastRow = Math.min(firstRow + tileSize, grid.getRows()) - 1;
+                for (int r = firstRow; r <= lastRow; r++) {
+                    int from = grid.cellStart(r * grid.getColumns() + firstColumn);
+                    int to = grid.cellEnd(r * grid.getColumns() + lastColumn);
+                    if (from < to) action.run(from, to, sums);
+                }
+            }
+        }
+    }
+
+    /** Handles indices from .. to-1 */
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RangeAction action;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RangeTask(RangeAction action, int from, int to, int grain) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(action, from, middle, grain), new RangeTask(action, middle, to, grain));
+            }
+            else computeDirectly();
+        }
+
+        /** Handles all indices of this task without splitting */
+        void computeDirectly() {
+            if (from < to) action.run(from, to, new NeighborSums());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package components;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** Per-step measurements of the simulation and the renderer.
+ *
+ *  Each metric keeps its most recent samples in a ring. Every sample is
+ *  also emitted as a "flock.Phase" JDK Flight Recorder event, which
+ *  costs nothing unless a recording with the event enabled is running.
+ *
+ *  Measuring is off by default. Callers check isEnabled() before
+ *  reading the clock, so a disabled metrics object costs one volatile
+ *  read per measured phase.
+ */
+public class SimulationMetrics {
+    public static final int DEFAULT_CAPACITY = 512;
+
+    /** Measured quantities. Each metric has a single writing thread. */
+    public enum Metric {
+        /** Time of updateAccelerations, including the grid rebuild */
+        UPDATE("update", "ms"),
+        /** Time of move */
+        MOVE("move", "ms"),
+        /** Time the simulation thread waits for the next tick */
+        WAIT("wait", "ms"),
+        /** Time the renderer takes to draw a frame */
+        RENDER("render", "ms"),
+        /** Average number of seen neighbors within the largest radius */
+        NEIGHBORS("neighbors", "per boid"),
+        /** Share of the steps that rebuilt the Verlet lists */
+        REBUILDS("rebuilds", "%"),
+        /** Time of reordering the Boids along a Morton curve */
+        REORDER("reorder", "ms");
+
+        public final String label;
+        public final String unit;
+
+        Metric(String label, String unit) {
+            this.label = label;
+            this.unit = unit;
+        }
+    }
+
+    /** Statistics of the samples of one metric */
+    public static final class Summary {
+        public final int samples;
+        public final double mean;
+        public final double p50;
+        public final double p95;
+        public final double p99;
+        public final double max;
+
+        Summary(int samples, double mean, double p50, double p95, double p99, double max) {
+            this.samples = samples;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+        }
+    }
+
+    @Name("flock.Phase")
+    @Label("Simulation Phase")
+    @Category("Flock Simulation")
+    @Description("A measured phase of a simulation step or a rendered frame")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        // Event already has a duration field, which begin and end would set
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+
+        @Label("Boids")
+        int boids;
+
+        @Label("Neighbors per Boid")
+        double neighborsPerBoid;
+    }
+
+    private final Map<Metric, MetricsRing> rings = new EnumMap<>(Metric.class);
+    private volatile boolean enabled = false;
+
+    public SimulationMetrics() { this(DEFAULT_CAPACITY); }
+
+    /** Creates metrics that keep the given number of samples per metric */
+    public SimulationMetrics(int capacity) {
+        for (Metric metric : Metric.values()) rings.put(metric, new MetricsRing(capacity));
+    }
+
+
+    /* Private methods */
+
+    private void emit(Metric metric, long nanos, int boids, double neighborsPerBoid) {
+        PhaseEvent event = new PhaseEvent();
+        if (!event.shouldCommit()) return;
+        event.phase = metric.label;
+        event.time = nanos;
+        event.boids = boids;
+        event.neighborsPerBoid = neighborsPerBoid;
+        event.commit();
+    }
+
+    /** Returns the value at the given quantile of sorted samples */
+    private static double quantile(double[] sorted, int count, double q) {
+        return sorted[Math.min((int) (q * count), count - 1)];
+    }
+
+
+    /* Public methods */
+
+    /** Records the time of a simulation step phase or a frame
+     *
+     * @param metric one of the timed metrics
+     * @param nanos duration in nanoseconds
+     * @param boids number of Boids in the phase
+     */
+    public void recordTime(Metric metric, long nanos, int boids) {
+        rings.get(metric).add(nanos / 1e6);
+        emit(metric, nanos, boids, 0);
+    }
+
+    /** Records the time of updateAccelerations together with the
+     *  neighbor count of the step
+     *
+     * @param nanos duration in nanoseconds
+     * @param boids number of Boids
+     * @param neighbors sum of the neighbor counts of all Boids
+     */
+    public void recordUpdate(long nanos, int boids, long neighbors) {
+        double neighborsPerBoid = boids == 0 ? 0 : (double) neighbors / boids;
+        rings.get(Metric.UPDATE).add(nanos / 1e6);
+        rings.get(Metric.NEIGHBORS).add(neighborsPerBoid);
+        emit(Metric.UPDATE, nanos, boids, neighborsPerBoid);
+    }
+
+    /** Records whether a step with Verlet lists rebuilt them, as 100 or 0,
+     *  so the mean is the percentage of steps that rebuilt the lists */
+    public void recordRebuild(boolean rebuilt) {
+        rings.get(Metric.REBUILDS).add(rebuilt ? 100 : 0);
+    }
+
+    /** Returns statistics of the samples currently in the ring of the
+     *  given metric, or null if there are none */
+    public Summary summarize(Metric metric) {
+        MetricsRing ring = rings.get(metric);
+        double[] sorted = new double[ring.capacity()];
+        int count = ring.copyTo(sorted);
+        if (count == 0) return null;
+        Arrays.sort(sorted, 0, count);
+        double sum = 0;
+        for (int i = 0; i < count; i++) sum += sorted[i];
+        return new Summary(count, sum / count, quantile(sorted, count, 0.5), quantile(sorted, count, 0.95),
+                quantile(sorted, count, 0.99), sorted[count - 1]);
+    }
+
+    /** Returns a short multi-line text of the mean and maximum of
+     *  every metric, for an on-screen overlay */
+    public String formatOverlay() {
+        StringBuilder text = new StringBuilder();
+        for (Metric metric : Metric.values()) {
+            Summary summary = summarize(metric);
+            text.append(String.format(Locale.ROOT, "%-9s", metric.label));
+            if (summary == null) text.append(" -\n");
+            else text.append(String.format(Locale.ROOT, " %6.2f / %6.2f%n", summary.mean, summary.max));
+        }
+        return text.toString();
+    }
+
+    /** Writes the statistics of every metric as CSV, one row per metric
+     *
+     * @param path file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void exportCsv(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            writer.write("metric,unit,samples,mean,p50,p95,p99,max\n");
+            for (Metric metric : Metric.values()) {
+                Summary s = summarize(metric);
+                if (s == null) writer.write(metric.label + "," + metric.unit + ",0,,,,,\n");
+                else writer.write(String.format(Locale.ROOT, "%s,%s,%d,%.6f,%.6f,%.6f,%.6f,%.6f%n",
+                        metric.label, metric.unit, s.samples, s.mean, s.p50, s.p95, s.p99, s.max));
+            }
+        }
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+}
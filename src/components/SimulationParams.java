@@ -0,0 +1,99 @@
+package components;
+
+/** Parameters of a Simulation. The parameters are immutable: a change
+ *  makes a new SimulationParams with one of the with methods, which the
+ *  Simulation publishes atomically. A step reads the parameters once,
+ *  so every change applies to whole steps.
+ *
+ * @param entityCount number of Boids
+ * @param alignmentMultiplier weight of the alignment force
+ * @param cohesionMultiplier weight of the cohesion force
+ * @param separationMultiplier weight of the separation force
+ * @param alignmentDistance alignment radius
+ * @param cohesionDistance cohesion radius
+ * @param separationDistance separation radius
+ * @param maxForce largest length of each steering force
+ * @param maxSpeed largest speed of a Boid
+ * @param detectionAngle field of view in degrees. Angles of 180 or more
+ *                       are not tested, so every neighbor is seen
+ * @param openingAngle used by NeighborSearch.QUADTREE: nodes across a radius or
+ *                     the edge of the field of view that are smaller than this
+ *                     times their distance are not opened. 0 is exact
+ */
+public record SimulationParams(int entityCount,
+                               double alignmentMultiplier, double cohesionMultiplier, double separationMultiplier,
+                               int alignmentDistance, int cohesionDistance, int separationDistance,
+                               double maxForce, double maxSpeed, double detectionAngle, double openingAngle) {
+
+    public static final SimulationParams DEFAULTS = new SimulationParams(100, 0.8, 0.5, 1.0, 50, 30, 50, 0.1, 3.0, 225.0, 0.5);
+
+    /* Squared radii, for distance tests without a square root */
+
+    public double squaredAlignmentDistance() { return (double) alignmentDistance * alignmentDistance; }
+    public double squaredCohesionDistance() { return (double) cohesionDistance * cohesionDistance; }
+    public double squaredSeparationDistance() { return (double) separationDistance * separationDistance; }
+
+    /** Returns the largest of the three radii */
+    public int maxDistance() { return Math.max(alignmentDistance, Math.max(cohesionDistance, separationDistance)); }
+
+    public SimulationParams withEntityCount(int entityCount) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withAlignmentMultiplier(double alignmentMultiplier) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withCohesionMultiplier(double cohesionMultiplier) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withSeparationMultiplier(double separationMultiplier) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withAlignmentDistance(int alignmentDistance) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withCohesionDistance(int cohesionDistance) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withSeparationDistance(int separationDistance) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    /** Returns a copy with the given radii */
+    public SimulationParams withDistances(int alignmentDistance, int cohesionDistance, int separationDistance) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withMaxForce(double maxForce) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withMaxSpeed(double maxSpeed) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withDetectionAngle(double detectionAngle) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+
+    public SimulationParams withOpeningAngle(double openingAngle) {
+        return new SimulationParams(entityCount, alignmentMultiplier, cohesionMultiplier, separationMultiplier,
+                alignmentDistance, cohesionDistance, separationDistance, maxForce, maxSpeed, detectionAngle, openingAngle);
+    }
+}
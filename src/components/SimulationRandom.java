@@ -0,0 +1,87 @@
+package components;
+
+/** Seedable, counter-based random numbers for the simulation.
+ *
+ *  Instead of advancing a shared state, every random value is a hash of
+ *  the seed, a stream and a counter. A stream stands for one use of
+ *  randomness, for example the spawns of a simulation or the separation
+ *  offsets of one step, and the counter picks a value inside the stream.
+ *  The values of a run therefore depend only on the seed and on what is
+ *  computed, not on the threads that compute it or on their order, and
+ *  generating them needs neither allocation nor synchronization.
+ *
+ *  The hash is the finalizer of SplitMix64.
+ */
+public final class SimulationRandom {
+
+    /** Stream of the random values used to spawn Boids */
+    public static final long SPAWN = 1;
+    /** Stream of the separation offsets of coincident Boids, combined with the step */
+    public static final long SEPARATION = 2;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+
+    /** Creates a generator
+     *
+     * @param seed seed of all values of this generator
+     */
+    public SimulationRandom(long seed) { this.seed = seed; }
+
+
+    /* Private methods */
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+
+    /* Public methods */
+
+    /** Returns the stream of the given kind for the given step
+     *
+     * @param kind one of the stream constants
+     * @param step number of the simulation step
+     * @return stream to pass to the other methods
+     */
+    public static long stream(long kind, long step) {
+        return mix(kind * GOLDEN_GAMMA + step);
+    }
+
+    /** Returns 64 random bits
+     *
+     * @param stream stream of the value
+     * @param counter index of the value in the stream
+     * @return random bits
+     */
+    public long nextLong(long stream, long counter) {
+        return mix(mix(seed + stream * GOLDEN_GAMMA) + counter * GOLDEN_GAMMA);
+    }
+
+    /** Returns a uniformly distributed double from 0 (inclusive) to 1 (exclusive)
+     *
+     * @param stream stream of the value
+     * @param counter index of the value in the stream
+     * @return random double
+     */
+    public double nextDouble(long stream, long counter) {
+        return (nextLong(stream, counter) >>> 11) * 0x1.0p-53;
+    }
+
+    /** Returns a small random nonzero offset, used as direction for
+     *  vectors of zero length. Uses two counters.
+     *
+     * @param stream stream of the value
+     * @param counter index of the first of the two values used
+     * @return offset between -0.0008 and 0.001
+     */
+    public double nextOffset(long stream, long counter) {
+        double magnitude = nextDouble(stream, counter + 1) % 0.0009;
+        return nextLong(stream, counter) < 0 ? 0.0001 + magnitude : 0.0001 - magnitude;
+    }
+
+    public long getSeed() { return seed; }
+}
@@ -0,0 +1,199 @@
+package components;
+
+import java.util.Arrays;
+
+/** A uniform grid that buckets Boids by their position.
+ *  The grid is rebuilt every simulation step and is used to
+ *  find neighbor candidates without comparing every Boid
+ *  against every other Boid.
+ *
+ *  Boid indices are stored with a counting sort: the Boids of
+ *  cell c are entries cellStart[c] .. cellStart[c+1]-1 of
+ *  cellEntries. Within a cell, Boids keep their store order.
+ *
+ *  The positions and velocities of the Boids are also copied in
+ *  entry order, so the Boids of neighboring cells on the same row
+ *  are next to each other in memory. The copies are doubles, or floats
+ *  for the single precision kernels.
+ *
+ *  In a toroidal world the cells tile the world exactly, so the columns
+ *  next to the first column are the second and the last one, and so on.
+ *  The neighbor block of a cell is then given in unwrapped indices, which
+ *  may be one past either edge of the grid, and wrapColumn and wrapRow
+ *  give the stored cell. Each Boid is stored only once.
+ */
+public class SpatialGrid {
+    private double cellWidth = 1;
+    private double cellHeight = 1;
+    private double width = 1;
+    private double height = 1;
+    private boolean toroidal = false;
+    private int columns = 0;
+    private int rows = 0;
+    private int[] cellStart = new int[1];
+    private int[] cellEntries = new int[0];
+    private int[] boidCells = new int[0];
+    double[] sortedX = new double[0];
+    double[] sortedY = new double[0];
+    double[] sortedVx = new double[0];
+    double[] sortedVy = new double[0];
+    float[] floatX = new float[0];
+    float[] floatY = new float[0];
+    float[] floatVx = new float[0];
+    float[] floatVy = new float[0];
+
+    /** Rebuilds the grid from the Boids of the given store.
+     *  The used cell size is at least minCellSize, so every Boid closer
+     *  than minCellSize is found from the 3x3 block of cells around a location.
+     *  The cell size is grown when needed to keep the cell count close to
+     *  the Boid count on very small radii.
+     *
+     * @param store Boids to insert into the grid
+     * @param width width of the world
+     * @param height height of the world
+     * @param minCellSize the largest interaction distance
+     * @param singlePrecision true to copy the Boids as floats instead of doubles
+     * @param toroidal true if the world wraps around at its edges
+     */
+    public void rebuild(BoidStore store, double width, double height, double minCellSize, boolean singlePrecision, boolean toroidal) {
+        int count = store.size();
+        width = Math.max(width, 1);
+        height = Math.max(height, 1);
+        double cellSize = Math.max(Math.max(minCellSize, 1), Math.sqrt(width * height / Math.max(count, 16)));
+        if (toroidal) {
+            // Cells are stretched to a whole number per side, so they stay at least cellSize
+            columns = Math.max((int) (width / cellSize), 1);
+            rows = Math.max((int) (height / cellSize), 1);
+            cellWidth = width / columns;
+            cellHeight = height / rows;
+        }
+        else {
+            columns = (int) Math.ceil(width / cellSize);
+            rows = (int) Math.ceil(height / cellSize);
+            cellWidth = cellSize;
+            cellHeight = cellSize;
+        }
+        this.width = width;
+        this.height = height;
+        this.toroidal = toroidal;
+        int cellCount = columns * rows;
+
+        if (cellStart.length < cellCount + 1) cellStart = new int[cellCount + 1];
+        if (cellEntries.length < count) cellEntries = new int[count];
+        if (boidCells.length < count) boidCells = new int[count];
+        if (singlePrecision && floatX.length < count) {
+            floatX = new float[count];
+            floatY = new float[count];
+            floatVx = new float[count];
+            floatVy = new float[count];
+        }
+        if (!singlePrecision && sortedX.length < count) {
+            sortedX = new double[count];
+            sortedY = new double[count];
+            sortedVx = new double[count];
+            sortedVy = new double[count];
+        }
+        Arrays.fill(cellStart, 0, cellCount + 1, 0);
+
+        // Count Boids per cell, shifted by one so the prefix sum gives start offsets
+        for (int i = 0; i < count; i++) {
+            int cell = rowOf(store.py[i]) * columns + columnOf(store.px[i]);
+            boidCells[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) cellStart[c + 1] += cellStart[c];
+
+        // Scatter Boid indices using the cell starts as cursors, then shift
+        // the cursors (which now point at the cell ends) back to the starts
+        for (int i = 0; i < count; i++) cellEntries[cellStart[boidCells[i]]++] = i;
+        for (int c = cellCount; c > 0; c--) cellStart[c] = cellStart[c - 1];
+        cellStart[0] = 0;
+
+        if (singlePrecision) {
+            for (int k = 0; k < count; k++) {
+                int i = cellEntries[k];
+                floatX[k] = (float) store.px[i];
+                floatY[k] = (float) store.py[i];
+                floatVx[k] = (float) store.vx[i];
+                floatVy[k] = (float) store.vy[i];
+            }
+        }
+        else {
+            for (int k = 0; k < count; k++) {
+                int i = cellEntries[k];
+                sortedX[k] = store.px[i];
+                sortedY[k] = store.py[i];
+                sortedVx[k] = store.vx[i];
+                sortedVy[k] = store.vy[i];
+            }
+        }
+    }
+
+    /** Returns the column of the given x coordinate, clamped to the grid */
+    public int columnOf(double x) {
+        return Math.min(Math.max((int) (x / cellWidth), 0), columns - 1);
+    }
+
+    /** Returns the row of the given y coordinate, clamped to the grid */
+    public int rowOf(double y) {
+        return Math.min(Math.max((int) (y / cellHeight), 0), rows - 1);
+    }
+
+    /** Returns the first column of the neighbor block of the given column.
+     *  In a toroidal world this is -1 for the first column, see wrapColumn.
+     *  The block is never wider than the grid, so no cell is visited twice. */
+    public int firstNeighborColumn(int column) {
+        return toroidal ? (columns < 3 ? 0 : column - 1) : Math.max(column - 1, 0);
+    }
+
+    /** Returns the last column of the neighbor block of the given column,
+     *  see firstNeighborColumn */
+    public int lastNeighborColumn(int column) {
+        return toroidal ? (columns < 3 ? columns - 1 : column + 1) : Math.min(column + 1, columns - 1);
+    }
+
+    /** Returns the first row of the neighbor block of the given row, see firstNeighborColumn */
+    public int firstNeighborRow(int row) {
+        return toroidal ? (rows < 3 ? 0 : row - 1) : Math.max(row - 1, 0);
+    }
+
+    /** Returns the last row of the neighbor block of the given row, see firstNeighborColumn */
+    public int lastNeighborRow(int row) {
+        return toroidal ? (rows < 3 ? rows - 1 : row + 1) : Math.min(row + 1, rows - 1);
+    }
+
+    /** Returns the stored column of a column of a neighbor block */
+    public int wrapColumn(int column) {
+        return column < 0 ? column + columns : column >= columns ? column - columns : column;
+    }
+
+    /** Returns the stored row of a row of a neighbor block */
+    public int wrapRow(int row) {
+        return row < 0 ? row + rows : row >= rows ? row - rows : row;
+    }
+
+    /** Returns true if the cells of the neighbor blocks are at their own
+     *  location relative to the Boid, that is, a cell of the block is not
+     *  also next to the Boid across an edge. False only in toroidal worlds
+     *  less than three cells wide or high. */
+    public boolean hasUniqueImages() {
+        return !toroidal || (columns >= 3 && rows >= 3);
+    }
+
+    /** Returns the index of the first entry of the given cell */
+    public int cellStart(int cell) { return cellStart[cell]; }
+
+    /** Returns the index after the last entry of the given cell */
+    public int cellEnd(int cell) { return cellStart[cell + 1]; }
+
+    /** Returns the Boid index stored in the given entry */
+    public int entry(int entryIndex) { return cellEntries[entryIndex]; }
+
+    public int getColumns() { return columns; }
+    public int getRows() { return rows; }
+    public double getCellWidth() { return cellWidth; }
+    public double getCellHeight() { return cellHeight; }
+    public double getWidth() { return width; }
+    public double getHeight() { return height; }
+    public boolean isToroidal() { return toroidal; }
+}
@@ -0,0 +1,35 @@
+package components;
+
+import java.nio.ByteOrder;
+
+/** Layout of trajectory files, shared by TrajectoryRecorder and TrajectoryReader.
+ *
+ *  A file starts with a header of HEADER_BYTES bytes:
+ *  magic (int), version (int), bytes per value (int), reserved (int),
+ *  tick length in nanoseconds (long) and a reserved long.
+ *
+ *  The header is followed by frames. A frame starts with a frame header
+ *  of FRAME_HEADER_BYTES bytes: Boid count n (int), reserved (int),
+ *  step number (long), world width (double) and world height (double).
+ *  The frame header is followed by four blocks of n floats: x positions,
+ *  y positions, x velocities and y velocities.
+ *
+ *  All values are little endian. Frames have no index, a reader finds
+ *  them by following the Boid counts, so a file cut short by a crash
+ *  is still readable up to its last complete frame.
+ */
+final class TrajectoryFormat {
+    static final int MAGIC = 0x464C4B54; // "FLKT"
+    static final int VERSION = 1;
+    static final int BYTES_PER_VALUE = Float.BYTES;
+    static final int HEADER_BYTES = 32;
+    static final int FRAME_HEADER_BYTES = 32;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private TrajectoryFormat() {}
+
+    /** Returns the size of a frame of the given number of Boids in bytes */
+    static long frameBytes(int boids) {
+        return FRAME_HEADER_BYTES + 4L * boids * BYTES_PER_VALUE;
+    }
+}
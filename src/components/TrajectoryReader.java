@@ -0,0 +1,158 @@
+package components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** Reads frames of a trajectory file written by TrajectoryRecorder.
+ *
+ *  The frames are found once when the file is opened, after which any
+ *  frame can be read in any order. The file is memory-mapped in windows
+ *  of WINDOW_BYTES bytes, so files larger than a single mapping can be
+ *  read as well. A frame cut short at the end of the file is ignored.
+ *
+ *  Readers are meant to be used from a single thread.
+ */
+public class TrajectoryReader implements AutoCloseable {
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private final FileChannel channel;
+    private final long tickNanos;
+    private long[] frameOffsets = new long[1024];
+    private int frameCount = 0;
+    private MappedByteBuffer window = null;
+    private long windowStart = 0;
+    private long windowEnd = 0;
+
+    /** Opens the given trajectory file
+     *
+     * @param path file to read
+     * @throws IOException if the file cannot be read or is not a trajectory file
+     */
+    public TrajectoryReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.HEADER_BYTES).order(TrajectoryFormat.ORDER);
+            if (!readFully(header, 0)
+                    || header.getInt(0) != TrajectoryFormat.MAGIC
+                    || header.getInt(4) != TrajectoryFormat.VERSION
+                    || header.getInt(8) != TrajectoryFormat.BYTES_PER_VALUE) {
+                throw new IOException(path + " is not a trajectory file");
+            }
+            tickNanos = header.getLong(16);
+            indexFrames();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    /* Private methods */
+
+    /** Reads bytes at the given file position until the buffer is full.
+     *  Returns false if the file ends first. */
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) return false;
+        }
+        return true;
+    }
+
+    /** Finds the offsets of all complete frames */
+    private void indexFrames() throws IOException {
+        long size = channel.size();
+        long offset = TrajectoryFormat.HEADER_BYTES;
+        ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).order(TrajectoryFormat.ORDER);
+        while (offset + TrajectoryFormat.FRAME_HEADER_BYTES <= size && readFully(count, offset)) {
+            int boids = count.getInt(0);
+            if (boids < 0) throw new IOException("Corrupted frame at offset " + offset);
+            long end = offset + TrajectoryFormat.frameBytes(boids);
+            if (end > size) break;
+            if (frameCount == frameOffsets.length) frameOffsets = Arrays.copyOf(frameOffsets, frameCount * 2);
+            frameOffsets[frameCount++] = offset;
+            offset = end;
+        }
+    }
+
+    /** Returns a mapped buffer that contains the given frame, positioned
+     *  at the start of the frame */
+    private ByteBuffer map(int frame) throws IOException {
+        long start = frameOffsets[frame];
+        long end = frame + 1 < frameCount ? frameOffsets[frame + 1] : start + frameBytes(frame);
+        if (window == null || start < windowStart || end > windowEnd) {
+            long length = Math.max(end - start, Math.min(WINDOW_BYTES, channel.size() - start));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            window.order(TrajectoryFormat.ORDER);
+            windowStart = start;
+            windowEnd = start + length;
+        }
+        window.position((int) (start - windowStart));
+        return window;
+    }
+
+    private long frameBytes(int frame) throws IOException {
+        ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).order(TrajectoryFormat.ORDER);
+        readFully(count, frameOffsets[frame]);
+        return TrajectoryFormat.frameBytes(count.getInt(0));
+    }
+
+
+    /* Public methods */
+
+    /** Replaces the Boids of the given store with the Boids of a frame.
+     *  The accelerations are set to the velocities.
+     *
+     * @param frame index of the frame, from 0 to getFrameCount()-1
+     * @param store store to fill
+     * @return step number of the frame
+     * @throws IOException if the file cannot be read
+     */
+    public long readFrame(int frame, BoidStore store) throws IOException {
+        if (frame < 0 || frame >= frameCount) throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        ByteBuffer buffer = map(frame);
+        int base = buffer.position();
+        int n = buffer.getInt(base);
+        long step = buffer.getLong(base + 8);
+        int block = n * TrajectoryFormat.BYTES_PER_VALUE;
+        store.truncate(0);
+        for (int i = 0; i < n; i++) {
+            int offset = base + TrajectoryFormat.FRAME_HEADER_BYTES + i * TrajectoryFormat.BYTES_PER_VALUE;
+            store.add(buffer.getFloat(offset), buffer.getFloat(offset + block),
+                      buffer.getFloat(offset + 2 * block), buffer.getFloat(offset + 3 * block));
+        }
+        return step;
+    }
+
+    /** Returns the number of Boids of a frame without reading the frame */
+    public int getBoidCount(int frame) throws IOException {
+        ByteBuffer buffer = map(frame);
+        return buffer.getInt(buffer.position());
+    }
+
+    /** Returns the world width of a frame */
+    public double getWidth(int frame) throws IOException {
+        ByteBuffer buffer = map(frame);
+        return buffer.getDouble(buffer.position() + 16);
+    }
+
+    /** Returns the world height of a frame */
+    public double getHeight(int frame) throws IOException {
+        ByteBuffer buffer = map(frame);
+        return buffer.getDouble(buffer.position() + 24);
+    }
+
+    public int getFrameCount() { return frameCount; }
+
+    /** Returns the length of a recorded simulation step in nanoseconds */
+    public long getTickNanos() { return tickNanos; }
+
+    @Override
+    public void close() throws IOException { channel.close(); }
+}
@@ -0,0 +1,220 @@
+package components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/** Streams the state of the Boids into a trajectory file, see TrajectoryFormat.
+ *
+ *  The simulation thread only copies the arrays of the store into one of
+ *  a fixed set of preallocated frames. A writer thread takes all filled
+ *  frames at once, converts them to the file format in its own buffers,
+ *  hands the frames back and writes the buffers with a single gathering
+ *  write. If every frame is waiting for the writer, the frame is dropped
+ *  instead of blocking the simulation thread.
+ *
+ *  Frames and buffers are reallocated only when a frame does not fit in
+ *  them, so a recording with a constant Boid count does not allocate per
+ *  frame. Every frame that record reports as queued is written by close.
+ */
+public class TrajectoryRecorder implements AutoCloseable {
+    public static final int DEFAULT_BUFFERS = 8;
+
+    private final FileChannel channel;
+    private final ArrayBlockingQueue<Frame> freeFrames;
+    private final ArrayBlockingQueue<Frame> filledFrames;
+    private final Thread writer;
+    private volatile boolean closed = false;
+    private volatile IOException failure = null;
+    private volatile long recordedFrames = 0;
+    private volatile long droppedFrames = 0;
+
+    /** Copy of the state of a store, in store order */
+    private static final class Frame {
+        long step;
+        double width, height;
+        int size;
+        double[] px, py, vx, vy;
+        int[] id;
+
+        Frame(int capacity) { allocate(capacity); }
+
+        void allocate(int capacity) {
+            px = new double[capacity];
+            py = new double[capacity];
+            vx = new double[capacity];
+            vy = new double[capacity];
+            id = new int[capacity];
+        }
+    }
+
+    /** Creates a recorder with DEFAULT_BUFFERS buffers, see the other constructor */
+    public TrajectoryRecorder(Path path, long tickNanos) throws IOException {
+        this(path, tickNanos, DEFAULT_BUFFERS);
+    }
+
+    /** Creates or replaces the given file and starts the writer thread
+     *
+     * @param path file to write
+     * @param tickNanos length of a simulation step in nanoseconds, stored in the header
+     * @param buffers number of frames that may wait for the writer, at least 1
+     * @throws IOException if the file cannot be created
+     */
+    public TrajectoryRecorder(Path path, long tickNanos, int buffers) throws IOException {
+        buffers = Math.max(buffers, 1);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.HEADER_BYTES).order(TrajectoryFormat.ORDER);
+        header.putInt(TrajectoryFormat.MAGIC).putInt(TrajectoryFormat.VERSION)
+              .putInt(TrajectoryFormat.BYTES_PER_VALUE).putInt(0)
+              .putLong(tickNanos).putLong(0).flip();
+        while (header.hasRemaining()) channel.write(header);
+
+        freeFrames = new ArrayBlockingQueue<>(buffers);
+        filledFrames = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) freeFrames.add(new Frame(1024));
+
+        final int batchSize = buffers;
+        writer = new Thread(() -> writeLoop(batchSize), "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    /* Private methods */
+
+    private static ByteBuffer allocate(long bytes) {
+        return ByteBuffer.allocateDirect((int) bytes).order(TrajectoryFormat.ORDER);
+    }
+
+    /** Converts a frame to the file format, reallocating the buffer if the frame
+     *  does not fit, and returns the buffer ready to be written */
+    private static ByteBuffer convert(Frame frame, ByteBuffer buffer) {
+        int n = frame.size;
+        long bytes = TrajectoryFormat.frameBytes(n);
+        if (buffer.capacity() < bytes) buffer = allocate(Math.max(bytes, 2L * buffer.capacity()));
+
+        buffer.clear();
+        buffer.putInt(n).putInt(0).putLong(frame.step).putDouble(frame.width).putDouble(frame.height);
+        int base = TrajectoryFormat.FRAME_HEADER_BYTES;
+        int block = n * TrajectoryFormat.BYTES_PER_VALUE;
+        // Boids are recorded in id order, so a Boid keeps its index in the file
+        for (int i = 0; i < n; i++) {
+            int offset = base + frame.id[i] * TrajectoryFormat.BYTES_PER_VALUE;
+            buffer.putFloat(offset, (float) frame.px[i]);
+            buffer.putFloat(offset + block, (float) frame.py[i]);
+            buffer.putFloat(offset + 2 * block, (float) frame.vx[i]);
+            buffer.putFloat(offset + 3 * block, (float) frame.vy[i]);
+        }
+        buffer.position(0).limit((int) bytes);
+        return buffer;
+    }
+
+    /** Converts and writes filled frames in batches until the recorder is
+     *  closed and every filled frame has been written */
+    private void writeLoop(int batchSize) {
+        List<Frame> batch = new ArrayList<>(batchSize);
+        ByteBuffer[] buffers = new ByteBuffer[batchSize];
+        for (int i = 0; i < batchSize; i++) buffers[i] = allocate(TrajectoryFormat.frameBytes(1024));
+        try {
+            while (true) {
+                Frame first = filledFrames.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && filledFrames.isEmpty()) return;
+                    continue;
+                }
+                batch.add(first);
+                filledFrames.drainTo(batch, batchSize - 1);
+                int count = batch.size();
+                long remaining = 0;
+                for (int i = 0; i < count; i++) {
+                    Frame frame = batch.get(i);
+                    buffers[i] = convert(frame, buffers[i]);
+                    remaining += buffers[i].remaining();
+                    freeFrames.add(frame);
+                }
+                batch.clear();
+                while (remaining > 0) remaining -= channel.write(buffers, 0, count);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /* Public methods */
+
+    /** Queues the current state of the given store as a frame. Does not
+     *  wait for the writer: if no frame is free, the frame is dropped.
+     *  A call that races with close either queues a frame that close
+     *  writes or returns false.
+     *
+     * @param store Boids to record
+     * @param step number of the simulation step
+     * @param width width of the world
+     * @param height height of the world
+     * @return false if the frame was dropped or the recorder has failed or is closed
+     */
+    public boolean record(BoidStore store, long step, double width, double height) {
+        if (closed || failure != null) return false;
+        Frame frame = freeFrames.poll();
+        if (frame == null) {
+            droppedFrames++;
+            return false;
+        }
+        int n = store.size();
+        if (frame.px.length < n) frame.allocate(Math.max(n, 2 * frame.px.length));
+        frame.step = step;
+        frame.width = width;
+        frame.height = height;
+        frame.size = n;
+        System.arraycopy(store.px, 0, frame.px, 0, n);
+        System.arraycopy(store.py, 0, frame.py, 0, n);
+        System.arraycopy(store.vx, 0, frame.vx, 0, n);
+        System.arraycopy(store.vy, 0, frame.vy, 0, n);
+        System.arraycopy(store.id, 0, frame.id, 0, n);
+        // The writer stops once it sees closed and no filled frame, so a frame
+        // must not be added after close has set closed
+        synchronized (this) {
+            if (closed) {
+                freeFrames.add(frame);
+                return false;
+            }
+            filledFrames.add(frame);
+        }
+        recordedFrames++;
+        return true;
+    }
+
+    /** Writes the queued frames and closes the file
+     *
+     * @throws IOException if writing has failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    /** Returns the number of frames queued for writing so far */
+    public long getRecordedFrames() { return recordedFrames; }
+
+    /** Returns the number of frames dropped because the writer was behind */
+    public long getDroppedFrames() { return droppedFrames; }
+}
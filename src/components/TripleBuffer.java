@@ -0,0 +1,54 @@
+package components;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/** A lock-free triple buffer for handing frames from one writer
+ *  thread to one reader thread.
+ *
+ *  The writer fills the back buffer and publishes it by swapping it
+ *  with the middle buffer. The reader takes the newest frame by
+ *  swapping its front buffer with the middle buffer. Neither thread
+ *  ever waits for the other or sees a buffer the other is using.
+ *
+ * @param <T> type of the buffered frames
+ */
+public class TripleBuffer<T> {
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final Object[] buffers = new Object[3];
+    // Index of the middle buffer, with FRESH set if it has not been read yet
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0;   // owned by the writer
+    private int front = 1;  // owned by the reader
+
+    public TripleBuffer(Supplier<T> factory) {
+        for (int i = 0; i < buffers.length; i++) buffers[i] = factory.get();
+    }
+
+    /** Returns the buffer the writer may fill. Writer thread only. */
+    @SuppressWarnings("unchecked")
+    public T getBack() { return (T) buffers[back]; }
+
+    /** Publishes the back buffer as the newest frame. Writer thread only. */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /** Returns true if a frame has been published since the last acquire */
+    public boolean hasUnread() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    /** Takes the newest published frame. If nothing has been published
+     *  since the last call, returns the same frame again. Reader thread only.
+     *
+     * @return the newest frame
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if (hasUnread()) front = middle.getAndSet(front) & INDEX_MASK;
+        return (T) buffers[front];
+    }
+}
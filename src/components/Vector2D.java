@@ -1,8 +1,5 @@
 package components;
 
-import java.util.Random;
-
-
 /** A simple 2D vector class */
 public class Vector2D {
     public double x;
@@ -39,10 +36,12 @@ public class Vector2D {
         return this;
     }
 
-    public Vector2D ensureDirection() {
+    /** Gives a zero vector a small random direction, using four
+     *  counters of the given random stream */
+    public Vector2D ensureDirection(SimulationRandom random, long stream, long counter) {
         if (x != 0 || y != 0) return this;
-        this.x = new Random().nextBoolean() ? 0.0001 + new Random().nextDouble() % 0.0009 : 0.0001 - new Random().nextDouble() % 0.0009;
-        this.y = new Random().nextBoolean() ? 0.0001 + new Random().nextDouble() % 0.0009 : 0.0001 - new Random().nextDouble() % 0.0009;
+        this.x = random.nextOffset(stream, counter);
+        this.y = random.nextOffset(stream, counter + 2);
         return this;
     }
 
@@ -0,0 +1,194 @@
+package components;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** Neighbor loop on SIMD lanes with the JDK Vector API.
+ *
+ *  The candidates of a Boid are the Boids in the 3x3 block of grid cells
+ *  around it. The cells of one row are consecutive in the sorted arrays
+ *  of SpatialGrid, so the cells of a row that are not completely outside
+ *  the field of view form few contiguous ranges, see BlockRanges, which
+ *  are processed a full vector at a time. The field of view and radius
+ *  tests are lane masks and the sums are masked adds, reduced once per
+ *  Boid. Cells completely inside the field of view are merged with the
+ *  others into longer ranges, so most ranges test the field of view.
+ *
+ *  The Boid itself is in the candidate ranges. It passes every radius
+ *  test with zero separation, so its contribution is subtracted after
+ *  the loop. Pairs at exactly the same location get a random separation
+ *  direction like in the scalar kernel.
+ *
+ *  In a toroidal world the block may reach across the edges of the world,
+ *  which also splits a row, and the candidates are moved to their image
+ *  nearest to the Boid, see PeriodicBoundary.
+ *
+ *  Only used if Simulation.VECTOR_API_AVAILABLE is true.
+ */
+final class VectorKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double MIN_DISTANCE = 0.001;
+
+    private VectorKernel() {}
+
+    /** Sums the neighbors of Boid i into the given sums
+     *
+     * @param grid grid rebuilt for the current step
+     * @param x x coordinate of the Boid
+     * @param y y coordinate of the Boid
+     * @param velX x component of the velocity of the Boid
+     * @param velY y component of the velocity of the Boid
+     * @param useFieldOfView true to skip neighbors outside the field of view
+     * @param minDot neighbors are seen if the dot product of the velocity and the
+     *               direction to the neighbor is at least minDot times the distance
+     * @param cosHalfAngle cosine of half of the detection angle
+     * @param sinHalfAngle sine of half of the detection angle
+     * @param alignmentDistance alignment radius
+     * @param cohesionDistance cohesion radius
+     * @param separationDistance separation radius
+     * @param random source of the offsets of coincident Boids
+     * @param offsetStream random stream of the offsets of the step
+     * @param offsetCounter first random counter of the offsets of the Boid
+     * @param sums sums to fill
+     */
+    static void sumNeighbors(SpatialGrid grid, double x, double y, double velX, double velY,
+                             boolean useFieldOfView, double minDot, double cosHalfAngle, double sinHalfAngle,
+                             double alignmentDistance, double cohesionDistance, double separationDistance,
+                             SimulationRandom random, long offsetStream, long offsetCounter,
+                             NeighborSums sums) {
+        final double[] sx = grid.sortedX, sy = grid.sortedY, svx = grid.sortedVx, svy = grid.sortedVy;
+        DoubleVector xs = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector ys = DoubleVector.broadcast(SPECIES, y);
+        DoubleVector velXs = DoubleVector.broadcast(SPECIES, velX);
+        DoubleVector velYs = DoubleVector.broadcast(SPECIES, velY);
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector alignmentXs = zero, alignmentYs = zero;
+        DoubleVector cohesionXs = zero, cohesionYs = zero;
+        DoubleVector separationXs = zero, separationYs = zero;
+        int alignmentNeighbors = 0, cohesionNeighbors = 0, separationNeighbors = 0;
+        int coincident = 0;
+        double alignmentX = 0, alignmentY = 0, cohesionX = 0, cohesionY = 0, separationX = 0, separationY = 0;
+
+        final boolean toroidal = grid.isToroidal();
+        final double width = grid.getWidth(), height = grid.getHeight();
+        if (sums.ranges == null) sums.ranges = new BlockRanges();
+        final BlockRanges ranges = sums.ranges;
+        ranges.fill(grid, x, y, velX, velY, useFieldOfView, cosHalfAngle, sinHalfAngle, true);
+        for (int range = 0; range < ranges.count; range++) {
+            final int start = ranges.start[range], end = ranges.end[range];
+            final boolean testAngle = ranges.testAngle[range];
+            int k = start;
+            for (int bound = start + SPECIES.loopBound(end - start); k < bound; k += SPECIES.length()) {
+                DoubleVector ox = DoubleVector.fromArray(SPECIES, sx, k);
+                DoubleVector oy = DoubleVector.fromArray(SPECIES, sy, k);
+                if (toroidal) {
+                    ox = image(ox, xs, width);
+                    oy = image(oy, ys, height);
+                }
+                DoubleVector dx = xs.sub(ox);
+                DoubleVector dy = ys.sub(oy);
+                DoubleVector distance = dx.mul(dx).add(dy.mul(dy)).sqrt();
+                DoubleVector dist = distance.max(MIN_DISTANCE);
+                VectorMask<Double> seen = SPECIES.maskAll(true);
+                if (testAngle) seen = velXs.mul(dx).add(velYs.mul(dy)).neg().compare(VectorOperators.GE, distance.mul(minDot));
+
+                VectorMask<Double> alignment = dist.compare(VectorOperators.LT, alignmentDistance).and(seen);
+                alignmentNeighbors += alignment.trueCount();
+                alignmentXs = alignmentXs.add(DoubleVector.fromArray(SPECIES, svx, k), alignment);
+                alignmentYs = alignmentYs.add(DoubleVector.fromArray(SPECIES, svy, k), alignment);
+
+                VectorMask<Double> cohesion = dist.compare(VectorOperators.LT, cohesionDistance).and(seen);
+                cohesionNeighbors += cohesion.trueCount();
+                cohesionXs = cohesionXs.add(ox, cohesion);
+                cohesionYs = cohesionYs.add(oy, cohesion);
+
+                VectorMask<Double> separation = dist.compare(VectorOperators.LT, separationDistance).and(seen);
+                if (separation.anyTrue()) {
+                    separationNeighbors += separation.trueCount();
+                    DoubleVector inverse = one.div(dist.mul(dist));
+                    separationXs = separationXs.add(dx.mul(inverse), separation);
+                    separationYs = separationYs.add(dy.mul(inverse), separation);
+                    coincident += dx.eq(0).and(dy.eq(0)).and(separation).trueCount();
+                }
+            }
+
+            // Scalar tail of the range
+            for (; k < end; k++) {
+                double ox = toroidal ? PeriodicBoundary.image(sx[k], x, width) : sx[k];
+                double oy = toroidal ? PeriodicBoundary.image(sy[k], y, height) : sy[k];
+                double dx = x - ox;
+                double dy = y - oy;
+                double squaredDistance = dx*dx + dy*dy;
+                if (testAngle && FieldOfView.isHidden(-(velX*dx + velY*dy), minDot, squaredDistance)) continue;
+                double dist = Math.max(Math.sqrt(squaredDistance), MIN_DISTANCE);
+                if (dist < alignmentDistance) {
+                    alignmentNeighbors++;
+                    alignmentX += svx[k];
+                    alignmentY += svy[k];
+                }
+                if (dist < cohesionDistance) {
+                    cohesionNeighbors++;
+                    cohesionX += ox;
+                    cohesionY += oy;
+                }
+                if (dist < separationDistance) {
+                    separationNeighbors++;
+                    if (dx == 0 && dy == 0) coincident++;
+                    separationX += dx / (dist*dist);
+                    separationY += dy / (dist*dist);
+                }
+            }
+        }
+
+        alignmentX += alignmentXs.reduceLanes(VectorOperators.ADD);
+        alignmentY += alignmentYs.reduceLanes(VectorOperators.ADD);
+        cohesionX += cohesionXs.reduceLanes(VectorOperators.ADD);
+        cohesionY += cohesionYs.reduceLanes(VectorOperators.ADD);
+        separationX += separationXs.reduceLanes(VectorOperators.ADD);
+        separationY += separationYs.reduceLanes(VectorOperators.ADD);
+
+        // Remove the Boid itself, which was counted as a neighbor at minimum distance.
+        // It is always in its own field of view as its distance is zero.
+        if (MIN_DISTANCE < alignmentDistance) {
+            alignmentNeighbors--;
+            alignmentX -= velX;
+            alignmentY -= velY;
+        }
+        if (MIN_DISTANCE < cohesionDistance) {
+            cohesionNeighbors--;
+            cohesionX -= x;
+            cohesionY -= y;
+        }
+        if (MIN_DISTANCE < separationDistance) {
+            separationNeighbors--;
+            coincident--;
+        }
+
+        // Other Boids at exactly the same location push to a random direction
+        for (int n = 0; n < coincident; n++) {
+            long counter = offsetCounter + 4L * n;
+            separationX += random.nextOffset(offsetStream, counter) / (MIN_DISTANCE * MIN_DISTANCE);
+            separationY += random.nextOffset(offsetStream, counter + 2) / (MIN_DISTANCE * MIN_DISTANCE);
+        }
+
+        sums.alignmentNeighbors = alignmentNeighbors;
+        sums.cohesionNeighbors = cohesionNeighbors;
+        sums.separationNeighbors = separationNeighbors;
+        sums.alignmentX = alignmentX;
+        sums.alignmentY = alignmentY;
+        sums.cohesionX = cohesionX;
+        sums.cohesionY = cohesionY;
+        sums.separationX = separationX;
+        sums.separationY = separationY;
+    }
+
+    /** Lane version of PeriodicBoundary.image */
+    private static DoubleVector image(DoubleVector others, DoubleVector positions, double size) {
+        DoubleVector offset = positions.sub(others);
+        return others.add(size, offset.compare(VectorOperators.GT, size / 2))
+                .sub(size, offset.compare(VectorOperators.LT, -size / 2));
+    }
+}
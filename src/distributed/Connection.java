@@ -0,0 +1,146 @@
+package distributed;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/** A non-blocking socket connection that carries length prefixed
+ *  messages, see Protocol.
+ *
+ *  Every connection of a process is registered with the same selector,
+ *  and exchange sends and receives one message on several connections
+ *  at once. Because writing and reading are interleaved, two processes
+ *  may send large messages to each other at the same time without
+ *  blocking on full socket buffers.
+ *
+ *  The outgoing and incoming buffers are reused and only grow, so a run
+ *  with a steady Boid count does not allocate per message.
+ */
+final class Connection implements Closeable {
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer header = ByteBuffer.allocate(4).order(Protocol.ORDER);
+    private ByteBuffer outgoing = allocate(1024);
+    private ByteBuffer incoming = allocate(1024);
+    private boolean sending = false;
+    private boolean receiving = false;
+
+    /** Wraps a connected channel and registers it with the given selector
+     *
+     * @param channel connected channel
+     * @param selector selector shared by the connections of this process
+     * @throws IOException if the channel cannot be configured
+     */
+    Connection(SocketChannel channel, Selector selector) throws IOException {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.channel = channel;
+        this.key = channel.register(selector, 0, this);
+    }
+
+    /** Starts a new outgoing message. The caller writes the payload into
+     *  the returned buffer, which has room for at least the given number
+     *  of bytes after the message type.
+     *
+     * @param type message type, see Protocol
+     * @param bytes largest payload size after the type
+     * @return buffer to write the payload into
+     */
+    ByteBuffer begin(int type, int bytes) {
+        if (outgoing.capacity() < bytes + 8) outgoing = allocate(Math.max(bytes + 8, 2 * outgoing.capacity()));
+        outgoing.clear();
+        outgoing.putInt(0);
+        outgoing.putInt(type);
+        return outgoing;
+    }
+
+    /** Returns the payload of the last received message after checking
+     *  its type
+     *
+     * @param type expected message type
+     * @return the payload, positioned after the type
+     * @throws IOException if the message has another type
+     */
+    ByteBuffer received(int type) throws IOException {
+        int actual = incoming.getInt(0);
+        if (actual != type) throw new IOException("Expected message " + type + " but got " + actual);
+        return incoming.position(4);
+    }
+
+    /** Sends the messages started with begin and/or receives one message
+     *  on each of the given connections. Returns when all are done.
+     *
+     * @param selector selector the connections are registered with
+     * @param connections connections to use
+     * @param send true to send the outgoing message of each connection
+     * @param receive true to receive a message on each connection
+     * @throws IOException if a connection fails or is closed by the peer
+     */
+    static void exchange(Selector selector, List<Connection> connections, boolean send, boolean receive) throws IOException {
+        int pending = 0;
+        for (Connection connection : connections) {
+            connection.sending = send;
+            connection.receiving = receive;
+            if (send) {
+                connection.outgoing.putInt(0, connection.outgoing.position() - 4);
+                connection.outgoing.flip();
+            }
+            if (receive) connection.header.clear();
+            connection.updateInterest();
+            if (connection.isBusy()) pending++;
+        }
+        while (pending > 0) {
+            selector.select();
+            for (SelectionKey selected : selector.selectedKeys()) {
+                Connection connection = (Connection) selected.attachment();
+                if (!connection.isBusy()) continue;
+                if (connection.sending && selected.isWritable()) connection.write();
+                if (connection.receiving && selected.isReadable()) connection.read();
+                connection.updateInterest();
+                if (!connection.isBusy()) pending--;
+            }
+            selector.selectedKeys().clear();
+        }
+    }
+
+    private void write() throws IOException {
+        channel.write(outgoing);
+        if (!outgoing.hasRemaining()) sending = false;
+    }
+
+    private void read() throws IOException {
+        if (header.hasRemaining()) {
+            if (channel.read(header) < 0) throw new EOFException("Connection closed");
+            if (header.hasRemaining()) return;
+            int length = header.getInt(0);
+            if (incoming.capacity() < length) incoming = allocate(Math.max(length, 2 * incoming.capacity()));
+            incoming.clear().limit(length);
+        }
+        if (channel.read(incoming) < 0) throw new EOFException("Connection closed");
+        if (!incoming.hasRemaining()) {
+            incoming.flip();
+            receiving = false;
+        }
+    }
+
+    private void updateInterest() {
+        key.interestOps((sending ? SelectionKey.OP_WRITE : 0) | (receiving ? SelectionKey.OP_READ : 0));
+    }
+
+    private boolean isBusy() { return sending || receiving; }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(Protocol.ORDER);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,183 @@
+package distributed;
+
+import components.BoidStore;
+import components.Simulation;
+import components.SimulationMetrics;
+import components.SimulationParams;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Runs a Simulation in several worker processes, see RegionWorker.
+ *
+ *  The coordinator keeps the parameters and the gathered state of the
+ *  flock in the given Simulation, so the GUI and the recorder read the
+ *  Boids from it as usual. Boid i of its store has id i in the workers.
+ *  New Boids are spawned by the Simulation as usual and sent to the
+ *  worker of their region. When the count shrinks, the workers drop
+ *  the Boids with the highest ids.
+ *
+ *  The workers are started as child processes of this JVM and talk to
+ *  the coordinator and to each other over loopback TCP.
+ */
+public class DistributedSimulation implements Closeable {
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000;
+
+    private final Simulation simulation;
+    private final Selector selector;
+    private final List<Connection> workers = new ArrayList<>();
+    private final List<Process> processes = new ArrayList<>();
+    // Boids with ids below this have been sent to the workers
+    private int sentCount = 0;
+
+    /** Starts the worker processes and waits until all have connected
+     *
+     * @param simulation simulation that holds the parameters and the gathered Boids
+     * @param workerCount number of worker processes, at least 1
+     * @param threadsPerWorker number of simulation threads in each worker
+     * @throws IOException if a worker cannot be started or does not connect
+     */
+    public DistributedSimulation(Simulation simulation, int workerCount, int threadsPerWorker) throws IOException {
+        this.simulation = simulation;
+        this.selector = Selector.open();
+        workerCount = Math.max(workerCount, 1);
+        InetAddress host = InetAddress.getLoopbackAddress();
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress(host, 0));
+             Selector acceptSelector = Selector.open()) {
+            for (int i = 0; i < workerCount; i++) {
+                processes.add(new ProcessBuilder(workerCommand(host.getHostAddress(), server.socket().getLocalPort())).inheritIO().start());
+            }
+
+            // Workers are numbered in the order they connect
+            server.configureBlocking(false);
+            server.register(acceptSelector, SelectionKey.OP_ACCEPT);
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+            while (workers.size() < workerCount) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || processes.stream().anyMatch(p -> !p.isAlive())) {
+                    close();
+                    throw new IOException("Only " + workers.size() + " of " + workerCount + " workers connected");
+                }
+                acceptSelector.select(Math.min(remaining, 100));
+                acceptSelector.selectedKeys().clear();
+                SocketChannel channel;
+                while (workers.size() < workerCount && (channel = server.accept()) != null) {
+                    workers.add(new Connection(channel, selector));
+                }
+            }
+        }
+
+        Connection.exchange(selector, workers, false, true);
+        int[] peerPorts = new int[workerCount];
+        for (int i = 0; i < workerCount; i++) peerPorts[i] = workers.get(i).received(Protocol.HELLO).getInt();
+        for (int i = 0; i < workerCount; i++) {
+            ByteBuffer init = workers.get(i).begin(Protocol.INIT, 36);
+            init.putInt(i);
+            init.putInt(workerCount);
+            init.putInt(Math.max(threadsPerWorker, 1));
+            init.putLong(simulation.getSeed());
+            init.putInt(i == 0 ? -1 : peerPorts[i - 1]);
+            init.putInt(simulation.getNeighborSearch().ordinal());
+            init.putInt(simulation.getKernel().ordinal());
+            init.putInt(simulation.getPrecision().ordinal());
+        }
+        Connection.exchange(selector, workers, true, false);
+    }
+
+    /** Returns the command that starts a worker with the class path and
+     *  Java runtime of this JVM */
+    private static List<String> workerCommand(String host, int port) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (Simulation.VECTOR_API_AVAILABLE) command.addAll(Arrays.asList("--add-modules", "jdk.incubator.vector"));
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), RegionWorker.class.getName(), host, Integer.toString(port)));
+        return command;
+    }
+
+    /** Spawns or removes Boids in the Simulation to match its entity
+     *  count. The changes reach the workers with the next step.
+     *
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     */
+    public void updateEntityCount(double xLimit, double yLimit) {
+        simulation.updateEntityCount(xLimit, yLimit);
+    }
+
+    /** Runs one step in the workers: updates the accelerations, moves
+     *  the Boids and gathers their new state into the Simulation.
+     *
+     * @param xLimit x limit of the world
+     * @param yLimit y limit of the world
+     * @throws IOException if a worker fails
+     */
+    public void step(double xLimit, double yLimit) throws IOException {
+        SimulationMetrics metrics = simulation.getMetrics();
+        long startTime = metrics.isEnabled() ? System.nanoTime() : 0;
+        BoidStore boids = simulation.getBoids();
+        int count = boids.size();
+        int first = Math.min(sentCount, count);
+        int workerCount = workers.size();
+        SimulationParams params = simulation.getParams();
+
+        int[] newCounts = new int[workerCount];
+        for (int i = first; i < count; i++) newCounts[ownerOf(boids.px[i], xLimit)]++;
+        ByteBuffer[] steps = new ByteBuffer[workerCount];
+        for (int w = 0; w < workerCount; w++) {
+            ByteBuffer step = steps[w] = workers.get(w).begin(Protocol.STEP, 16 + Protocol.PARAMETER_BYTES + 8 + Protocol.RECORD_BYTES * newCounts[w]);
+            step.putDouble(xLimit);
+            step.putDouble(yLimit);
+            step.putInt(count);
+            Protocol.putParameters(step, params);
+            step.putInt(newCounts[w]);
+        }
+        for (int i = first; i < count; i++) {
+            Protocol.putBoid(steps[ownerOf(boids.px[i], xLimit)], i, boids, i);
+        }
+        sentCount = count;
+
+        Connection.exchange(selector, workers, true, true);
+        for (Connection worker : workers) {
+            ByteBuffer state = worker.received(Protocol.STATE);
+            int owned = state.getInt();
+            for (int k = 0; k < owned; k++) {
+                int id = state.getInt();
+                boids.set(id, state.getDouble(), state.getDouble(), state.getDouble(), state.getDouble());
+            }
+        }
+        if (startTime != 0) metrics.recordTime(SimulationMetrics.Metric.UPDATE, System.nanoTime() - startTime, count);
+    }
+
+    private int ownerOf(double x, double xLimit) {
+        return Math.min(Math.max((int) (x * workers.size() / xLimit), 0), workers.size() - 1);
+    }
+
+    public int getWorkerCount() { return workers.size(); }
+
+    /** Closes the connections, which stops the workers */
+    @Override
+    public void close() throws IOException {
+        for (Connection worker : workers) worker.close();
+        selector.close();
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) process.destroy();
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package distributed;
+
+import components.BoidStore;
+import components.SimulationParams;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/** Messages between a DistributedSimulation (the coordinator) and its
+ *  RegionWorkers.
+ *
+ *  A message is a 4-byte payload length followed by the payload, which
+ *  starts with a 4-byte message type. Numbers are little endian. Boids
+ *  are sent as records of an int id followed by the doubles px, py, vx
+ *  and vy, preceded by the record count.
+ *
+ *  <pre>
+ *  HELLO  worker to coordinator: int peerPort
+ *  INIT   coordinator to worker: int index, int workers, int threads,
+ *         long seed, int leftPort (-1 for none), int neighborSearch, int kernel,
+ *         int precision
+ *  STEP   coordinator to worker: double width, height, int entityCount,
+ *         the other parameters (see putParameters), new Boids
+ *  STATE  worker to coordinator: the Boids owned after the step
+ *  PEER   worker to worker: ghost Boids or migrating Boids
+ *  </pre>
+ */
+final class Protocol {
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int HELLO = 1;
+    static final int INIT = 2;
+    static final int STEP = 3;
+    static final int STATE = 4;
+    static final int PEER = 5;
+
+    static final int RECORD_BYTES = 4 + 4 * 8;
+    static final int PARAMETER_BYTES = 7 * 8 + 3 * 4;
+
+    private Protocol() {}
+
+    /** Writes the given parameters except the entity count */
+    static void putParameters(ByteBuffer buffer, SimulationParams params) {
+        buffer.putDouble(params.alignmentMultiplier());
+        buffer.putDouble(params.cohesionMultiplier());
+        buffer.putDouble(params.separationMultiplier());
+        buffer.putInt(params.alignmentDistance());
+        buffer.putInt(params.cohesionDistance());
+        buffer.putInt(params.separationDistance());
+        buffer.putDouble(params.maxForce());
+        buffer.putDouble(params.maxSpeed());
+        buffer.putDouble(params.detectionAngle());
+        buffer.putDouble(params.openingAngle());
+    }
+
+    /** Reads parameters written by putParameters
+     *
+     * @param buffer buffer to read from
+     * @param entityCount entity count of the returned parameters, which is not part of the block
+     * @return the parameters
+     */
+    static SimulationParams getParameters(ByteBuffer buffer, int entityCount) {
+        return new SimulationParams(entityCount,
+                buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    /** Writes Boid i of the given store as a record with the given id */
+    static void putBoid(ByteBuffer buffer, int id, BoidStore store, int i) {
+        buffer.putInt(id);
+        buffer.putDouble(store.px[i]);
+        buffer.putDouble(store.py[i]);
+        buffer.putDouble(store.vx[i]);
+        buffer.putDouble(store.vy[i]);
+    }
+}
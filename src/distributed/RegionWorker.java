@@ -0,0 +1,208 @@
+package distributed;
+
+import components.BoidStore;
+import components.Simulation;
+import components.SimulationExecutor;
+import components.SimulationParams;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A worker process of a DistributedSimulation. The world is split into
+ *  vertical strips of equal width and the worker simulates the Boids of
+ *  one strip, its region.
+ *
+ *  Every step the worker sends its Boids within the largest interaction
+ *  radius of a region edge to the neighboring worker, which adds them
+ *  to its own Boids as ghosts. The forces are then computed with the
+ *  normal Simulation over the owned Boids and the ghosts, and only the
+ *  owned Boids are moved. Boids that leave the region are migrated to
+ *  the neighbor in their direction, which passes them on if they moved
+ *  past it.
+ *
+ *  Ghosts come only from the adjacent regions, so regions should be at
+ *  least as wide as the largest interaction radius.
+ *
+ *  Usage: RegionWorker HOST PORT, where HOST and PORT are the address
+ *  of the coordinator.
+ */
+public final class RegionWorker {
+    private final Simulation simulation = new Simulation();
+    private final Selector selector;
+    private final Connection coordinator;
+    private final Connection left;
+    private final Connection right;
+    private final List<Connection> peers = new ArrayList<>();
+    private final int index;
+    private final int workers;
+    // Ids of the Boids in simulation order, see DistributedSimulation
+    private int[] ids = new int[1024];
+
+    private RegionWorker(Selector selector, Connection coordinator, Connection left, Connection right, int index, int workers) {
+        this.selector = selector;
+        this.coordinator = coordinator;
+        this.left = left;
+        this.right = right;
+        this.index = index;
+        this.workers = workers;
+        if (left != null) peers.add(left);
+        if (right != null) peers.add(right);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        Selector selector = Selector.open();
+        Connection coordinator = new Connection(SocketChannel.open(new InetSocketAddress(host, port)), selector);
+
+        // The right neighbor connects to the peer port of this worker
+        ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress(host, 0));
+        coordinator.begin(Protocol.HELLO, 4).putInt(server.socket().getLocalPort());
+        Connection.exchange(selector, List.of(coordinator), true, false);
+        Connection.exchange(selector, List.of(coordinator), false, true);
+        ByteBuffer init = coordinator.received(Protocol.INIT);
+        int index = init.getInt();
+        int workers = init.getInt();
+        int threads = init.getInt();
+        long seed = init.getLong();
+        int leftPort = init.getInt();
+        Simulation.NeighborSearch neighborSearch = Simulation.NeighborSearch.values()[init.getInt()];
+        Simulation.Kernel kernel = Simulation.Kernel.values()[init.getInt()];
+        Simulation.Precision precision = Simulation.Precision.values()[init.getInt()];
+
+        Connection left = leftPort < 0 ? null : new Connection(SocketChannel.open(new InetSocketAddress(host, leftPort)), selector);
+        Connection right = index == workers - 1 ? null : new Connection(server.accept(), selector);
+        server.close();
+
+        RegionWorker worker = new RegionWorker(selector, coordinator, left, right, index, workers);
+        worker.simulation.setSeed(seed ^ index);
+        worker.simulation.setNeighborSearch(neighborSearch);
+        worker.simulation.setKernel(kernel);
+        worker.simulation.setPrecision(precision);
+        // The ids of the worker follow the store order, see remove
+        worker.simulation.setReorderInterval(0);
+        worker.simulation.setExecutor(new SimulationExecutor(threads, SimulationExecutor.DEFAULT_TILE_SIZE));
+        try {
+            worker.run();
+        } catch (EOFException e) {
+            // The coordinator has closed the connection
+        } finally {
+            worker.simulation.setExecutor(null);
+        }
+    }
+
+    /** Runs steps until the coordinator closes the connection */
+    private void run() throws IOException {
+        BoidStore boids = simulation.getBoids();
+        while (true) {
+            Connection.exchange(selector, List.of(coordinator), false, true);
+            ByteBuffer step = coordinator.received(Protocol.STEP);
+            double width = step.getDouble();
+            double height = step.getDouble();
+            int entityCount = step.getInt();
+            SimulationParams params = Protocol.getParameters(step, entityCount);
+            simulation.setParams(params);
+            addBoids(step);
+
+            // Removed Boids are the ones with the highest ids
+            for (int i = boids.size() - 1; i >= 0; i--) {
+                if (ids[i] >= entityCount) remove(i);
+            }
+
+            // Ghosts
+            double leftEdge = index * width / workers;
+            double rightEdge = (index + 1) * width / workers;
+            double halo = params.maxDistance();
+            int owned = boids.size();
+            ByteBuffer toLeft = left == null ? null : beginPeer(left, owned);
+            ByteBuffer toRight = right == null ? null : beginPeer(right, owned);
+            int leftCount = 0, rightCount = 0;
+            for (int i = 0; i < owned; i++) {
+                if (toLeft != null && boids.px[i] < leftEdge + halo) {
+                    Protocol.putBoid(toLeft, ids[i], boids, i);
+                    leftCount++;
+                }
+                if (toRight != null && boids.px[i] >= rightEdge - halo) {
+                    Protocol.putBoid(toRight, ids[i], boids, i);
+                    rightCount++;
+                }
+            }
+            exchangePeers(toLeft, leftCount, toRight, rightCount);
+
+            simulation.updateAccelerations(params, width, height);
+            boids.truncate(owned);
+            simulation.move(width, height);
+
+            // Migration
+            toLeft = left == null ? null : beginPeer(left, owned);
+            toRight = right == null ? null : beginPeer(right, owned);
+            leftCount = 0;
+            rightCount = 0;
+            for (int i = boids.size() - 1; i >= 0; i--) {
+                int owner = Math.min(Math.max((int) (boids.px[i] * workers / width), 0), workers - 1);
+                if (owner == index) continue;
+                if (owner < index) {
+                    Protocol.putBoid(toLeft, ids[i], boids, i);
+                    leftCount++;
+                }
+                else {
+                    Protocol.putBoid(toRight, ids[i], boids, i);
+                    rightCount++;
+                }
+                remove(i);
+            }
+            exchangePeers(toLeft, leftCount, toRight, rightCount);
+
+            ByteBuffer state = coordinator.begin(Protocol.STATE, 4 + Protocol.RECORD_BYTES * boids.size());
+            state.putInt(boids.size());
+            for (int i = 0; i < boids.size(); i++) Protocol.putBoid(state, ids[i], boids, i);
+            Connection.exchange(selector, List.of(coordinator), true, false);
+        }
+    }
+
+    /** Starts a PEER message with room for the given number of Boids. The
+     *  record count is written by exchangePeers. */
+    private static ByteBuffer beginPeer(Connection peer, int boids) {
+        ByteBuffer buffer = peer.begin(Protocol.PEER, 4 + Protocol.RECORD_BYTES * boids);
+        buffer.putInt(0);
+        return buffer;
+    }
+
+    /** Sends the PEER messages to the neighbors and adds the Boids
+     *  received from them */
+    private void exchangePeers(ByteBuffer toLeft, int leftCount, ByteBuffer toRight, int rightCount) throws IOException {
+        if (toLeft != null) toLeft.putInt(8, leftCount);
+        if (toRight != null) toRight.putInt(8, rightCount);
+        Connection.exchange(selector, peers, true, true);
+        for (Connection peer : peers) addBoids(peer.received(Protocol.PEER));
+    }
+
+    /** Adds the Boid records of the given message to the simulation */
+    private void addBoids(ByteBuffer message) {
+        BoidStore boids = simulation.getBoids();
+        int count = message.getInt();
+        for (int k = 0; k < count; k++) {
+            int id = message.getInt();
+            int i = boids.add(message.getDouble(), message.getDouble(), message.getDouble(), message.getDouble());
+            if (i >= ids.length) ids = Arrays.copyOf(ids, 2 * ids.length);
+            ids[i] = id;
+        }
+    }
+
+    /** Removes Boid i by moving the last Boid into its place */
+    private void remove(int i) {
+        BoidStore boids = simulation.getBoids();
+        int last = boids.size() - 1;
+        boids.set(i, boids.px[last], boids.py[last], boids.vx[last], boids.vy[last]);
+        ids[i] = ids[last];
+        boids.truncate(last);
+    }
+}
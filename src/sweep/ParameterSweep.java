@@ -0,0 +1,201 @@
+package sweep;
+
+import components.FlockStatistics;
+import components.Simulation;
+import components.SimulationParams;
+import components.SpatialGrid;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/** Runs the simulation without a GUI over a grid of parameters and
+ *  writes flock statistics of every run as CSV.
+ *
+ *  Every combination of the given parameter values is run once per seed.
+ *  Each run has its own Simulation, which runs sequentially, and the runs
+ *  are spread over a fixed number of threads, one per processor unless
+ *  --threads is given. The rows are written in the order of the grid as
+ *  soon as the earlier runs have finished. Runs with the same seed and
+ *  parameters give the same statistics, only their speed varies.
+ *
+ *  Usage: ParameterSweep [--NAME=V1,V2,...]... [options], where NAME is
+ *  one of the parameters of Parameter, written as in --alignment-multiplier.
+ *  Options:
+ *    --boids=N            Boid count (default 2000)
+ *    --steps=N            steps per run (default 1000)
+ *    --measured-steps=N   polarization is averaged over the last N steps (default 200)
+ *    --seeds=S1,S2,...    seeds of the runs (default 1)
+ *    --width=W --height=H size of the world (default: a square with 400 square pixels per Boid)
+ *    --toroidal           wraps the world around at its edges
+ *    --cluster-distance=D Boids closer than D are in the same cluster (default 50)
+ *    --threads=N          number of concurrent runs (default: one per processor)
+ *    --out=FILE           writes the CSV to FILE instead of the standard output
+ */
+public final class ParameterSweep {
+    private static final double AREA_PER_BOID = 400;
+
+    /** Parameters that can be swept. Radii must be whole numbers. */
+    enum Parameter {
+        ALIGNMENT_MULTIPLIER(SimulationParams::withAlignmentMultiplier),
+        COHESION_MULTIPLIER(SimulationParams::withCohesionMultiplier),
+        SEPARATION_MULTIPLIER(SimulationParams::withSeparationMultiplier),
+        ALIGNMENT_DISTANCE((p, v) -> p.withAlignmentDistance(wholeNumber(v))),
+        COHESION_DISTANCE((p, v) -> p.withCohesionDistance(wholeNumber(v))),
+        SEPARATION_DISTANCE((p, v) -> p.withSeparationDistance(wholeNumber(v))),
+        MAX_FORCE(SimulationParams::withMaxForce),
+        MAX_SPEED(SimulationParams::withMaxSpeed),
+        DETECTION_ANGLE(SimulationParams::withDetectionAngle);
+
+        final String option = name().toLowerCase(Locale.ROOT).replace('_', '-');
+        final String column = name().toLowerCase(Locale.ROOT);
+        private final BiFunction<SimulationParams, Double, SimulationParams> apply;
+
+        Parameter(BiFunction<SimulationParams, Double, SimulationParams> apply) {
+            this.apply = apply;
+        }
+
+        SimulationParams apply(SimulationParams params, double value) { return apply.apply(params, value); }
+    }
+
+    /** Settings shared by all runs */
+    private record Settings(int boids, int steps, int measuredSteps, double width, double height,
+                            boolean toroidal, double clusterDistance) {}
+
+    /** One point of the grid */
+    private record Run(int index, long seed, SimulationParams params, double[] values) {}
+
+    /** Statistics of a finished run */
+    private record Result(double polarization, FlockStatistics.Clusters clusters, double stepsPerSecond) {}
+
+    private ParameterSweep() {}
+
+    private static int wholeNumber(double value) {
+        if (value != Math.rint(value)) throw new IllegalArgumentException("Radius " + value + " is not a whole number");
+        return (int) value;
+    }
+
+    /** Runs the simulation of a grid point and measures it */
+    private static Result simulate(Run run, Settings settings) {
+        Simulation simulation = new Simulation();
+        simulation.setSeed(run.seed());
+        simulation.setParams(run.params());
+        simulation.setParallel(false);
+        if (settings.toroidal()) simulation.setBoundary(Simulation.Boundary.TOROIDAL);
+        double polarization = 0;
+        long start = System.nanoTime();
+        for (int step = 0; step < settings.steps(); step++) {
+            simulation.step(settings.width(), settings.height());
+            if (step >= settings.steps() - settings.measuredSteps()) polarization += FlockStatistics.polarization(simulation.getBoids());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        FlockStatistics.Clusters clusters = FlockStatistics.clusters(simulation.getBoids(), new SpatialGrid(),
+                settings.width(), settings.height(), settings.clusterDistance(), settings.toroidal());
+        // The executor is created on first use even for sequential runs
+        simulation.setExecutor(null);
+        return new Result(polarization / Math.min(settings.measuredSteps(), settings.steps()), clusters, settings.steps() / seconds);
+    }
+
+    /** Returns the values of a comma separated list */
+    private static double[] parseValues(String list) {
+        return Arrays.stream(list.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /** Returns every combination of the values of the swept parameters,
+     *  the last parameter changing fastest */
+    private static List<double[]> combinations(List<double[]> values) {
+        List<double[]> combinations = new ArrayList<>();
+        combinations.add(new double[0]);
+        for (double[] parameterValues : values) {
+            List<double[]> extended = new ArrayList<>();
+            for (double[] combination : combinations) {
+                for (double value : parameterValues) {
+                    double[] longer = Arrays.copyOf(combination, combination.length + 1);
+                    longer[combination.length] = value;
+                    extended.add(longer);
+                }
+            }
+            combinations = extended;
+        }
+        return combinations;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Set<String> known = new HashSet<>(List.of("boids", "steps", "measured-steps", "width", "height", "toroidal",
+                "cluster-distance", "threads", "seeds", "out"));
+        for (Parameter parameter : Parameter.values()) known.add(parameter.option);
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") ? arg.substring(2, equals < 0 ? arg.length() : equals) : arg;
+            if (!known.contains(name)) throw new IllegalArgumentException("Unknown argument " + arg);
+            options.put(name, equals < 0 ? "" : arg.substring(equals + 1));
+        }
+
+        List<Parameter> swept = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        for (Parameter parameter : Parameter.values()) {
+            String list = options.get(parameter.option);
+            if (list == null) continue;
+            swept.add(parameter);
+            values.add(parseValues(list));
+        }
+        int boids = Integer.parseInt(options.getOrDefault("boids", "2000"));
+        int steps = Integer.parseInt(options.getOrDefault("steps", "1000"));
+        int measuredSteps = Integer.parseInt(options.getOrDefault("measured-steps", "200"));
+        double side = Math.sqrt(boids * AREA_PER_BOID);
+        double width = Double.parseDouble(options.getOrDefault("width", Double.toString(side)));
+        double height = Double.parseDouble(options.getOrDefault("height", Double.toString(side)));
+        boolean toroidal = options.containsKey("toroidal");
+        double clusterDistance = Double.parseDouble(options.getOrDefault("cluster-distance", "50"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        long[] seeds = Arrays.stream(options.getOrDefault("seeds", "1").split(",")).mapToLong(Long::parseLong).toArray();
+        String out = options.get("out");
+        Settings settings = new Settings(boids, steps, Math.max(measuredSteps, 1), width, height, toroidal, clusterDistance);
+
+        List<Run> runs = new ArrayList<>();
+        for (double[] combination : combinations(values)) {
+            SimulationParams params = SimulationParams.DEFAULTS.withEntityCount(boids);
+            for (int p = 0; p < swept.size(); p++) params = swept.get(p).apply(params, combination[p]);
+            for (long seed : seeds) runs.add(new Run(runs.size(), seed, params, combination));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+        try (PrintWriter csv = new PrintWriter(out == null ? new OutputStreamWriter(System.out) : Files.newBufferedWriter(Path.of(out)))) {
+            List<Future<Result>> results = new ArrayList<>();
+            for (Run run : runs) results.add(pool.submit(() -> simulate(run, settings)));
+
+            csv.print("run,seed");
+            for (Parameter parameter : swept) csv.print("," + parameter.column);
+            csv.println(",polarization,clusters,largest_cluster,steps_per_second");
+            for (Run run : runs) {
+                Result result = results.get(run.index()).get();
+                csv.print(run.index() + "," + run.seed());
+                for (double value : run.values()) csv.print("," + value);
+                csv.printf(Locale.ROOT, ",%.6f,%d,%d,%.1f%n", result.polarization(), result.clusters().count(),
+                        result.clusters().largest(), result.stepsPerSecond());
+                csv.flush();
+                if (out != null) System.err.printf("run %d of %d done%n", run.index() + 1, runs.size());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A run failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}